@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Island containment checks as every block event does them. The
+ * allocating check is inIslandSpace() as it was before the bounds were
+ * precomputed, four Vector3s per call.
+ * <p>
+ * Run with: mvn -P benchmark test-compile exec:exec
+ *
+ * @author Adam Matthew
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IslandBoundsBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private IslandData island;
+    private final int[] xs = new int[POINTS];
+    private final int[] zs = new int[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        island = new IslandData("SkyBlock", 100, 100, 200);
+        // A quarter of the points are on the island
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = random.nextInt(400) - 100;
+            zs[i] = random.nextInt(400) - 100;
+        }
+    }
+
+    @Benchmark
+    public boolean onIsland() {
+        int i = next++ & (POINTS - 1);
+        return island.onIsland(xs[i], zs[i]);
+    }
+
+    @Benchmark
+    public boolean inIslandSpace() {
+        int i = next++ & (POINTS - 1);
+        return island.inIslandSpace(xs[i], zs[i]);
+    }
+
+    @Benchmark
+    public boolean allocatingInIslandSpace() {
+        int i = next++ & (POINTS - 1);
+        int x = xs[i];
+        int z = zs[i];
+        int half = island.getProtectionSize() / 2;
+        return x >= island.getCenter().getFloorX() - half && x < island.getCenter().getFloorX() + half
+            && z >= island.getCenter().getFloorZ() - half && z < island.getCenter().getFloorZ() + half;
+    }
+}
@@ -30,6 +30,9 @@ import cn.nukkit.utils.ConfigSection;
 import suomicraftpe.command.AdminCMD;
 import suomicraftpe.command.ChallangesCMD;
 import suomicraftpe.database.ASConnection;
+import suomicraftpe.database.Database;
+import suomicraftpe.database.LogDatabase;
+import suomicraftpe.database.variables.AbstractDatabase;
 import suomicraftpe.database.variables.MySQLDatabase;
 import suomicraftpe.database.variables.SQLiteDatabase;
 import suomicraftpe.economy.Economy;
@@ -37,15 +40,18 @@ import suomicraftpe.island.GridManager;
 import suomicraftpe.island.IslandManager;
 import suomicraftpe.listener.ChatHandler;
 import suomicraftpe.listener.IslandGuard;
+import suomicraftpe.listener.IslandTracker;
 import suomicraftpe.listener.invitation.InvitationHandler;
 import suomicraftpe.locales.ASlocales;
 import suomicraftpe.panels.Panel;
 import suomicraftpe.player.PlayerData;
+import suomicraftpe.player.MemberIndex;
 import suomicraftpe.player.TeamManager;
 import suomicraftpe.player.TeleportLogic;
 import suomicraftpe.schematic.SchematicHandler;
 import suomicraftpe.storage.InventorySave;
 import suomicraftpe.storage.IslandData;
+import suomicraftpe.storage.WorldRegistry;
 import suomicraftpe.storage.WorldSettings;
 import suomicraftpe.task.TaskManager;
 import suomicraftpe.utils.ConfigManager;
@@ -53,6 +59,7 @@ import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -72,10 +79,10 @@ public class ASkyBlock extends PluginBase {
     private static ASkyBlock object;
 
     public int[] version;
-    public ArrayList<WorldSettings> level = new ArrayList<>();
+    public final WorldRegistry level = new WorldRegistry();
 
     private Config cfg;
-    private ASConnection db = null;
+    private Database db = null;
     private ChatHandler chatHandler;
     private InvitationHandler invitationHandler;
     private IslandManager manager;
@@ -83,6 +90,8 @@ public class ASkyBlock extends PluginBase {
     private InventorySave inventory;
     private TeamManager managers;
     private TeleportLogic teleportLogic;
+    private MemberIndex memberIndex;
+    private IslandTracker tracker;
     private ChallangesCMD cmds;
     private Messages msgs;
     private Panel panel;
@@ -98,7 +107,7 @@ public class ASkyBlock extends PluginBase {
         return object;
     }
 
-    public ASConnection getDatabase() {
+    public Database getDatabase() {
         return db;
     }
 
@@ -126,6 +135,10 @@ public class ASkyBlock extends PluginBase {
         return managers;
     }
 
+    public MemberIndex getMemberIndex() {
+        return memberIndex;
+    }
+
     public Panel getPanel() {
         return panel;
     }
@@ -167,6 +180,10 @@ public class ASkyBlock extends PluginBase {
         return teleportLogic;
     }
 
+    public IslandTracker getTracker() {
+        return tracker;
+    }
+
     public Integer getIslandLevel(Player player) {
         PlayerData pd = getPlayerInfo(player);
         return pd == null ? 0 : pd.getIslandLevel();
@@ -229,11 +246,7 @@ public class ASkyBlock extends PluginBase {
     }
 
     public ArrayList<String> getLevels() {
-        ArrayList<String> level = new ArrayList<>();
-        for (WorldSettings settings : this.level) {
-            level.add(settings.getLevel().getName());
-        }
-        return level;
+        return new ArrayList<>(level.getNames());
     }
 
     private void start() {
@@ -242,7 +255,23 @@ public class ASkyBlock extends PluginBase {
     }
 
     public WorldSettings getSettings(String level) {
-        return this.level.stream().filter(settings -> settings.getLevel().getName().equalsIgnoreCase(level)).findFirst().orElse(null);
+        return this.level.get(level);
+    }
+
+    /**
+     * The grid size of a world. Also answers before the worlds are loaded,
+     * the database keys its islands with it at startup.
+     *
+     * @param levelName The world
+     * @return The cell size of the world, the island distance if it has none
+     */
+    public int getPlotSize(String levelName) {
+        WorldSettings ws = level.get(levelName);
+        if (ws != null) {
+            return ws.getPlotSize();
+        }
+        int plotSize = cfg.getSections("world." + levelName).getInt("plotSize");
+        return plotSize > 0 ? plotSize : Settings.islandDistance;
     }
 
     @Override
@@ -257,22 +286,47 @@ public class ASkyBlock extends PluginBase {
         return cfg;
     }
 
+    /**
+     * Creates the SQL backend configured in the database section
+     *
+     * @param type mysql or sqlite
+     * @return The backend, not connected yet
+     */
+    public AbstractDatabase createBackend(String type) {
+        if (type.equalsIgnoreCase("mysql")) {
+            return new MySQLDatabase(cfg.getString("database.MySQL.host"), cfg.getInt("database.MySQL.port"), cfg.getString("database.MySQL.database"), cfg.getString("database.MySQL.username"), cfg.getString("database.MySQL.password"), Settings.serverPreparedStatements);
+        }
+        return new SQLiteDatabase(new File(getDataFolder(), cfg.getString("database.SQLite.file-name") + ".db"), Settings.sqliteWal);
+    }
+
     private void initDatabase() {
         if (cfg.getString("database.connection").equalsIgnoreCase("mysql")) {
             try {
-                db = new ASConnection(this, new MySQLDatabase(cfg.getString("database.MySQL.host"), cfg.getInt("database.MySQL.port"), cfg.getString("database.MySQL.database"), cfg.getString("database.MySQL.username"), cfg.getString("database.MySQL.password")), true);
+                db = new ASConnection(this, createBackend("mysql"), true);
             } catch (SQLException ex) {
+                Utils.send("&c" + ex.getMessage());
             } catch (ClassNotFoundException | InterruptedException ex) {
                 Utils.send("Unable to create MySql database");
             }
+        } else if (cfg.getString("database.connection").equalsIgnoreCase("log")) {
+            try {
+                db = new LogDatabase(this, new File(getDataFolder(), cfg.getString("database.log.file-name", "database") + ".log"));
+            } catch (IOException ex) {
+                Utils.send("&cUnable to open the storage log: " + ex.getMessage());
+            }
         } else {
             try {
-                db = new ASConnection(this, new SQLiteDatabase(new File(getDataFolder(), cfg.getString("database.SQLite.file-name") + ".db")), true);
+                db = new ASConnection(this, createBackend("sqlite"), true);
             } catch (SQLException ex) {
+                Utils.send("&c" + ex.getMessage());
             } catch (ClassNotFoundException | InterruptedException ex) {
                 Utils.send("Unable to create MySql database");
             }
         }
+        memberIndex = new MemberIndex(this);
+        if (db != null) {
+            memberIndex.load(db.getTeams());
+        }
     }
 
     /**
@@ -291,16 +345,13 @@ public class ASkyBlock extends PluginBase {
         msgs.loadMessages();
         getServer().getPluginManager().registerEvents(chatHandler, this);
         pm.registerEvents(new IslandGuard(this), this);
+        pm.registerEvents(tracker = new IslandTracker(this), this);
         ServerScheduler pd = getServer().getScheduler();
         pd.scheduleRepeatingTask(new PluginTask(this), 20);
     }
 
     public void saveLevel(boolean showEnd) {
-        ArrayList<String> level = new ArrayList<>();
-        for (WorldSettings settings : this.level) {
-            level.add(settings.getLevel().getName());
-        }
-        this.db.saveWorlds(level);
+        this.db.saveWorlds(new ArrayList<>(level.getNames()));
     }
 
     private void registerObject() {
@@ -352,7 +403,7 @@ public class ASkyBlock extends PluginBase {
             levels.add("SkyBlock");
         }
 
-        ArrayList<WorldSettings> settings = new ArrayList<>();
+        this.level.clear();
         for (String levelName : levels) {
             if (!Server.getInstance().isLevelGenerated(levelName)) {
                 Server.getInstance().generateLevel(levelName, 0, SkyBlockGenerator.class);
@@ -378,9 +429,8 @@ public class ASkyBlock extends PluginBase {
                 int seaLevel = section.getInt("seaLevel");
                 worldSettings = new WorldSettings(permission, level, plotSize, stopTime, islandHieght, seaLevel);
             }
-            settings.add(worldSettings);
+            this.level.add(worldSettings);
         }
-        this.level = settings;
     }
 
     public void loadV2Schematic() {
@@ -23,10 +23,14 @@ import cn.nukkit.command.ConsoleCommandSender;
 import cn.nukkit.utils.TextFormat;
 import suomicraftpe.ASkyBlock;
 import suomicraftpe.SkyBlockGenerator;
+import suomicraftpe.database.DatabaseMigrator;
+import suomicraftpe.database.QueryStats;
+import suomicraftpe.locales.ASlocales;
 import suomicraftpe.storage.IslandData;
 import suomicraftpe.storage.WorldSettings;
 import suomicraftpe.task.DeleteIslandTask;
 import suomicraftpe.task.TaskManager;
+import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
 import java.util.ArrayList;
@@ -42,6 +46,7 @@ import java.util.List;
 public class AdminCMD extends Command {
 
     private final ASkyBlock plugin;
+    private DatabaseMigrator migration = null;
 
     public AdminCMD(ASkyBlock ev) {
         super("isadmin", "Island admin command", "\u00a77<parameters>", new String[]{"isa"});
@@ -75,11 +80,9 @@ public class AdminCMD extends Command {
                     return true;
                 }
 
-                for (WorldSettings ws : plugin.level) {
-                    if (ws.getLevel().getName().equals(args[1])) {
-                        sender.sendMessage(plugin.getPrefix() + plugin.getLocale(p).errorLevelGenerated);
-                        return true;
-                    }
+                if (plugin.level.contains(args[1])) {
+                    sender.sendMessage(plugin.getPrefix() + plugin.getLocale(p).errorLevelGenerated);
+                    return true;
                 }
 
                 if (!plugin.getServer().isLevelGenerated(args[1])) {
@@ -152,6 +155,85 @@ public class AdminCMD extends Command {
             case "setspawn":
                 this.setSpawn(sender);
                 break;
+            case "migrate":
+                if (!sender.hasPermission("is.admin.migrate")) {
+                    sender.sendMessage(plugin.getLocale(p).errorNoPermission);
+                    return true;
+                }
+                if (args.length != 2) {
+                    sender.sendMessage(plugin.getPrefix() + plugin.getLocale(p).adminMigrateUsage.replace("[com]", commandLabel));
+                    return true;
+                }
+                this.migrate(sender, args[1]);
+                return true;
+            case "dbstats":
+                if (!sender.hasPermission("is.admin.dbstats")) {
+                    sender.sendMessage(plugin.getLocale(p).errorNoPermission);
+                    return true;
+                }
+                QueryStats stats = plugin.getDatabase().getStats();
+                if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                    stats.reset();
+                    sender.sendMessage(plugin.getPrefix() + plugin.getLocale(p).generalSuccess);
+                    return true;
+                }
+                List<String> report = stats.report();
+                sender.sendMessage(plugin.getLocale(p).adminDbStatsHeader);
+                if (report.isEmpty()) {
+                    sender.sendMessage(plugin.getLocale(p).adminDbStatsNone);
+                }
+                for (String line : report) {
+                    sender.sendMessage(line.replace("&", "§"));
+                }
+                sender.sendMessage(plugin.getLocale(p).adminDbStatsLookups
+                    .replace("[claimed]", Long.toString(plugin.getGrid().getClaimedLookups()))
+                    .replace("[unclaimed]", Long.toString(plugin.getGrid().getUnclaimedLookups())));
+                return true;
+            case "near":
+                if (!sender.hasPermission("is.admin.near")) {
+                    sender.sendMessage(plugin.getLocale(p).errorNoPermission);
+                    return true;
+                }
+                if (p == null) {
+                    sender.sendMessage(plugin.getLocale(p).errorUseInGame);
+                    return true;
+                }
+                int radius = 0;
+                if (args.length > 1) {
+                    try {
+                        radius = Integer.parseInt(args[1]);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                if (radius <= 0) {
+                    sender.sendMessage(plugin.getPrefix() + plugin.getLocale(p).adminNearUsage.replace("[com]", commandLabel));
+                    return true;
+                }
+                WorldSettings world = plugin.getSettings(p.getLevel().getName());
+                if (world == null) {
+                    sender.sendMessage(plugin.getPrefix() + plugin.getLocale(p).errorWrongWorld);
+                    return true;
+                }
+                // Keeps the lookup to at most 129 * 129 cells
+                radius = Math.min(radius, world.getPlotSize() * 64);
+                List<IslandData> near = plugin.getGrid().getIslandsNear(world.getLevel().getName(), p.getFloorX(), p.getFloorZ(), radius);
+                ASlocales locale = plugin.getLocale(p);
+                sender.sendMessage(locale.adminNearHeader.replace("[radius]", Integer.toString(radius)));
+                if (near.isEmpty()) {
+                    sender.sendMessage(locale.adminNearNone);
+                }
+                for (IslandData other : near) {
+                    int dx = other.getCenter().getFloorX() - p.getFloorX();
+                    int dz = other.getCenter().getFloorZ() - p.getFloorZ();
+                    String owner = other.isSpawn() ? locale.adminNearSpawn : other.getOwner() + " #" + other.getId();
+                    sender.sendMessage(locale.adminNearIsland
+                        .replace("[owner]", owner)
+                        .replace("[name]", other.getName())
+                        .replace("[x]", Integer.toString(other.getCenter().getFloorX()))
+                        .replace("[z]", Integer.toString(other.getCenter().getFloorZ()))
+                        .replace("[distance]", Integer.toString((int) Math.sqrt((double) dx * dx + (double) dz * dz))));
+                }
+                return true;
             case "addmessage":
                 if (!sender.hasPermission("is.admin.delete")) {
                     sender.sendMessage(plugin.getLocale(p).errorNoPermission);
@@ -186,6 +268,36 @@ public class AdminCMD extends Command {
         return true;
     }
 
+    private void migrate(CommandSender sender, String target) {
+        Player p = sender.isPlayer() ? plugin.getServer().getPlayer(sender.getName()) : null;
+        ASlocales locale = plugin.getLocale(p);
+        if (target.equalsIgnoreCase("stop")) {
+            if (migration == null || !migration.isRunning()) {
+                sender.sendMessage(plugin.getPrefix() + locale.adminMigrateNotRunning);
+                return;
+            }
+            migration.stop();
+            sender.sendMessage(plugin.getPrefix() + locale.adminMigrateStopping);
+            return;
+        }
+        String source = plugin.getConfig().getString("database.connection");
+        if (!target.equalsIgnoreCase("mysql") && !target.equalsIgnoreCase("sqlite")) {
+            sender.sendMessage(plugin.getPrefix() + locale.adminMigrateBadTarget);
+            return;
+        }
+        if (!source.equalsIgnoreCase("mysql") && !source.equalsIgnoreCase("sqlite") || source.equalsIgnoreCase(target)) {
+            sender.sendMessage(plugin.getPrefix() + locale.adminMigrateSameSource.replace("[source]", source).replace("[target]", target));
+            return;
+        }
+        if (migration != null && migration.isRunning()) {
+            sender.sendMessage(plugin.getPrefix() + locale.adminMigrateRunning);
+            return;
+        }
+        migration = new DatabaseMigrator(plugin.createBackend(source), plugin.createBackend(target));
+        migration.start();
+        sender.sendMessage(plugin.getPrefix() + locale.adminMigrateStarted.replace("[source]", source).replace("[target]", target));
+    }
+
     private void setSpawn(CommandSender sender) {
         Player p = sender.isPlayer() ? plugin.getServer().getPlayer(sender.getName()) : null;
         if (p == null) {
@@ -209,6 +321,9 @@ public class AdminCMD extends Command {
         }
         // Save this island
         IslandData pd = plugin.getIslandInfo(p.getLocation());
+        if (pd == null) {
+            pd = new IslandData(p.getLevel().getName(), p.getFloorX(), p.getFloorZ(), Settings.protectionrange);
+        }
         pd.setSpawn(true);
         plugin.getDatabase().saveIsland(pd);
         sender.sendMessage(TextFormat.GREEN + plugin.getLocale(p).generalSuccess);
@@ -264,6 +379,18 @@ public class AdminCMD extends Command {
             helpList.add("&e" + label + " delete &7=> &a" + plugin.getLocale(p).adminHelpDelete);
         }
 
+        if (sender.hasPermission("is.admin.migrate")) {
+            helpList.add("&e" + label + " migrate <mysql|sqlite|stop> &7=> &a" + plugin.getLocale(p).adminHelpMigrate);
+        }
+
+        if (sender.hasPermission("is.admin.near")) {
+            helpList.add("&e" + label + " near <radius> &7=> &a" + plugin.getLocale(p).adminHelpNear);
+        }
+
+        if (sender.hasPermission("is.admin.dbstats")) {
+            helpList.add("&e" + label + " dbstats [reset] &7=> &a" + plugin.getLocale(p).adminHelpDbStats);
+        }
+
         int totalPage = helpList.size() % pageHeight == 0 ? helpList.size() / pageHeight : helpList.size() / pageHeight + 1;
         pageNumber = Math.min(pageNumber, totalPage);
         if (pageNumber < 1) {
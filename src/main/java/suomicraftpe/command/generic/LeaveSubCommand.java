@@ -20,7 +20,6 @@ import cn.nukkit.Player;
 import cn.nukkit.command.CommandSender;
 import suomicraftpe.ASkyBlock;
 import suomicraftpe.command.SubCommand;
-import suomicraftpe.storage.WorldSettings;
 
 /**
  * @author Adam Matthew
@@ -59,11 +58,8 @@ public class LeaveSubCommand extends SubCommand {
     @Override
     public boolean execute(CommandSender sender, String[] args) {
         Player pt = getPlugin().getServer().getPlayer(sender.getName());
-        for (WorldSettings levelSetting : getPlugin().level) {
-            String level = levelSetting.getLevel().getName();
-            if (!pt.getLevel().getName().equalsIgnoreCase(level)) {
-                return true;
-            }
+        if (!getPlugin().level.contains(pt.getLevel())) {
+            return true;
         }
         // Check if sender is in gamemode 1
         if (!pt.isOp()) {
@@ -20,6 +20,7 @@ import cn.nukkit.Player;
 import cn.nukkit.command.CommandSender;
 import suomicraftpe.ASkyBlock;
 import suomicraftpe.command.SubCommand;
+import suomicraftpe.task.TaskManager;
 
 /**
  * @author Adam Matthew
@@ -58,12 +59,16 @@ public class HomeSubCommand extends SubCommand {
     @Override
     public boolean execute(CommandSender sender, String[] args) {
         Player p = sender.getServer().getPlayer(sender.getName());
-        if (getPlugin().getDatabase().getIslands(sender.getName()).size() == 1) {
-            getPlugin().getGrid().homeTeleport(p, 1, false);
-            return true;
-        }
-
-        getPlugin().getPanel().addHomeFormOverlay(p);
+        getPlugin().getDatabase().async().getIslands(sender.getName()).thenAcceptAsync(islands -> {
+            if (!p.isOnline()) {
+                return;
+            }
+            if (islands.size() == 1) {
+                getPlugin().getGrid().homeTeleport(p, 1, false);
+                return;
+            }
+            getPlugin().getPanel().showHomeForm(p, islands);
+        }, TaskManager.MAIN_THREAD);
         return true;
     }
 }
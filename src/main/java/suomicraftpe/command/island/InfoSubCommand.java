@@ -58,11 +58,9 @@ public class InfoSubCommand extends SubCommand {
     @Override
     public boolean execute(CommandSender sender, String[] args) {
         Player p = sender.getServer().getPlayer(sender.getName());
-        for (String level : getPlugin().getLevels()) {
-            if (!p.getLevel().getName().equalsIgnoreCase(level)) {
-                sender.sendMessage(getPrefix() + getLocale(p).errorWrongWorld);
-                return true;
-            }
+        if (!getPlugin().level.contains(p.getLevel())) {
+            sender.sendMessage(getPrefix() + getLocale(p).errorWrongWorld);
+            return true;
         }
         getPlugin().getIsland().islandInfo(p, p.getLocation());
         return true;
@@ -20,30 +20,86 @@ import cn.nukkit.level.Position;
 import suomicraftpe.ASkyBlock;
 import suomicraftpe.database.variables.AbstractDatabase;
 import suomicraftpe.database.variables.MySQLDatabase;
+import suomicraftpe.database.variables.SQLiteDatabase;
 import suomicraftpe.player.PlayerData;
 import suomicraftpe.storage.IslandData;
-import suomicraftpe.task.TaskManager;
 import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Full sql database
  *
  * @author Adam Matthew
  */
-public final class ASConnection {
+public final class ASConnection implements Database {
+
+    // Every query shape used here, values are always bound as parameters so
+    // each one is prepared once per pooled connection and then reused
+    private static final String SELECT_ISLANDS = "SELECT " + RowMapper.ISLAND_COLUMNS + " FROM `island`";
+    private static final String INSERT_ISLAND = "INSERT INTO `island` (`id`, `islandId`, `x`, `y`, `z`, `isSpawn`, `psize`, `owner`, `name`, `world`, `biome`, `locked`, `flags`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_ISLAND = "UPDATE `island` SET `name` = ?, `biome` = ?, `locked` = ?, `isSpawn` = ?, `flags` = ?, `spawnX` = ?, `spawnY` = ?, `spawnZ` = ? WHERE(`id` = ? AND `owner` = ?)";
+    private static final String UPDATE_SPAWN_POSITION = "UPDATE `island` SET `spawnX` = ?, `spawnY` = ?, `spawnZ` = ? WHERE `isSpawn` = ?";
+    private static final String DELETE_ISLAND = "DELETE FROM `island` WHERE(`id` = ? AND `owner` = ?)";
+    private static final String DELETE_ISLAND_AT = "DELETE FROM `island` WHERE(`world` = ? AND `x` = ? AND `z` = ?)";
+    private static final String SELECT_WORLDS = "SELECT `world` FROM `worlds`";
+    private static final String INSERT_WORLD = "INSERT INTO `worlds` (`world`) VALUES (?)";
+    private static final String SELECT_PLAYER_NAMES = "SELECT `player` FROM `players`";
+    private static final String SELECT_TEAMS = "SELECT `player`, `members` FROM `players` WHERE `members` IS NOT NULL AND `members` <> ''";
+    private static final String SELECT_PLAYER = "SELECT " + RowMapper.PLAYER_COLUMNS + " FROM `players` WHERE `player` = ?";
+    private static final String INSERT_PLAYER = "INSERT INTO `players` ("
+        + "`player`, "
+        + "`homes`, "
+        + "`resetleft`, "
+        + "`banlist`, "
+        + "`teamleader`, "
+        + "`teamislandlocation`, "
+        + "`inteam` , "
+        + "`islandlvl`, "
+        + "`members`,"
+        + "`name`, "
+        + "`locale`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_PLAYER = "UPDATE `players` SET "
+        + "`homes` = ?, "
+        + "`resetleft` = ?, "
+        + "`banlist` = ?, "
+        + "`teamleader` = ?, "
+        + "`teamislandlocation` = ?, "
+        + "`inteam` = ?, "
+        + "`islandlvl` = ?, "
+        + "`members` = ?, "
+        + "`name` = ?, "
+        + "`locale` = ? "
+        + "WHERE `player` = ?";
+    private static final String SELECT_CHALLENGES = "SELECT `challenge`, `completed`, `times` FROM `challenges` WHERE `player` = ?";
+    private static final String UPSERT_CHALLENGE_SQLITE = "INSERT OR REPLACE INTO `challenges` (`player`, `challenge`, `completed`, `times`) VALUES (?, ?, ?, ?)";
+    private static final String UPSERT_CHALLENGE_MYSQL = "INSERT INTO `challenges` (`player`, `challenge`, `completed`, `times`) VALUES (?, ?, ?, ?) "
+        + "ON DUPLICATE KEY UPDATE `completed` = VALUES(`completed`), `times` = VALUES(`times`)";
 
     private final AbstractDatabase db;
     // Faster to search islands ~75%
-    private final ArrayList<IslandData> islandCache = new ArrayList<>();
-    private Connection con;
+    private final IslandRegistry islandCache = new IslandRegistry();
+    // Every write goes through the writer threads, one for SQLite
+    private final ConnectionPool pool;
+    private final WriteBehindQueue writer;
+    // Reads, this is the same pool as above unless SQLite runs in WAL mode
+    private final ConnectionPool readPool;
+    private final AsyncDatabase async;
+    private final QueryStats stats = new QueryStats();
+    private final PlayerSaveQueue players = new PlayerSaveQueue(this::writePlayers, Settings.playerSaveWindow);
+    // Players that are online, loaded when they log in
+    private final ConcurrentHashMap<String, PlayerData> sessions = new ConcurrentHashMap<>();
+    // Sessions that are still loading, a load that finishes after the
+    // player left (or logged in again) is thrown away
+    private final ConcurrentHashMap<String, CompletableFuture<PlayerData>> loading = new ConcurrentHashMap<>();
     private boolean closed = true;
-    private IslandData islandSpawn;
     private ASkyBlock plugin;
     private boolean mySQL;
 
@@ -51,84 +107,32 @@ public final class ASConnection {
         // Performace upgrade: Cache
         this.plugin = plugin;
         this.db = database;
-        this.con = database.openConnection();
         this.mySQL = database instanceof MySQLDatabase;
+        // SQLite only allows one writer at a time, more connections would just fight over the file lock
+        int maxSize = mySQL ? Settings.poolMaxSize : 1;
+        this.pool = new ConnectionPool(database, Math.min(Settings.poolMinSize, maxSize), maxSize, Settings.poolConnectionTimeout,
+            Settings.poolIdleTimeout, Settings.poolMaxLifetime, Settings.poolLeakDetectionThreshold, Settings.statementCacheSize);
+        // MySQL takes writes to different rows in parallel, leave a connection for the reads
+        int writers = mySQL ? Math.max(1, Math.min(Settings.poolWriters, maxSize - 1)) : 1;
+        this.writer = new WriteBehindQueue("ASkyBlock-Database", pool, stats, writers);
+        if (database instanceof SQLiteDatabase && ((SQLiteDatabase) database).isWal()) {
+            // With WAL readers see the last commit and never wait for the writer
+            int readers = Math.max(1, Settings.sqliteReadConnections);
+            this.readPool = new ConnectionPool(database, 1, readers, Settings.poolConnectionTimeout,
+                Settings.poolIdleTimeout, Settings.poolMaxLifetime, Settings.poolLeakDetectionThreshold, Settings.statementCacheSize, true);
+            this.async = new AsyncDatabase(this, readers);
+        } else {
+            this.readPool = pool;
+            this.async = new AsyncDatabase(this, maxSize);
+        }
         this.createTables(true);
-        // MySQL Support
-        TaskManager.runTaskAsync(() -> {
-            long last = System.currentTimeMillis();
-            while (true) {
-                if (closed) {
-                    break;
-                }
-                if (mySQL && System.currentTimeMillis() - last > 550000 || !isValid()) {
-                    last = System.currentTimeMillis();
-                    reconnect();
-                } else {
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        });
+        this.loadIslands();
     }
 
     public void createTables(boolean updateCheck) throws SQLException, ClassNotFoundException, InterruptedException {
         if (closed) {
-            String[] tables = new String[]{"island", "worlds", "players"};
-            DatabaseMetaData meta = this.con.getMetaData();
-            int create = 0;
-            for (String s : tables) {
-                try (ResultSet set = meta.getTables(null, null, s, new String[]{"TABLE"})) {
-                    if (!set.next()) {
-                        create++;
-                    }
-                }
-            }
-            if (create == 0) {
-                return;
-            }
-            // A lot of updates will comming
-            try (Statement set = this.con.createStatement()) {
-                //createdDate updatedDate votes
-                set.addBatch("CREATE TABLE IF NOT EXISTS `island` (`id` INTEGER,"
-                    + "`islandId` INTEGER NOT NULL,"
-                    + "`x` INTEGER NOT NULL,"
-                    + "`y` INTEGER NOT NULL,"
-                    + "`z` INTEGER NOT NULL,"
-                    + "`spawnX` INTEGER,"
-                    + "`spawnY` INTEGER,"
-                    + "`spawnZ` INTEGER,"
-                    + "`isSpawn` BOOLEAN NOT NULL,"
-                    + "`psize` INTEGER NOT NULL,"
-                    + "`owner` VARCHAR NOT NULL,"
-                    + "`name` VARCHAR NOT NULL,"
-                    + "`world` VARCHAR NOT NULL,"
-                    + "`protection` VARCHAR NOT NULL,"
-                    + "`biome` VARCHAR NOT NULL,"
-                    + "`locked` INTEGER NOT NULL)");
-                //+ "`active` INTEGER NOT NULL)");
-                set.addBatch("CREATE TABLE IF NOT EXISTS `worlds` (`world` VARCHAR)");
-                set.addBatch("CREATE TABLE IF NOT EXISTS `players` (`player` VARCHAR NOT NULL,"
-                    + "`homes` INTEGER NOT NULL,"
-                    + "`resetleft` INTEGER NOT NULL,"
-                    + "`banlist` VARCHAR,"
-                    + "`teamleader` VARCHAR,"
-                    + "`teamislandlocation` VARCHAR,"
-                    + "`inteam` BOOLEAN,"
-                    + "`islandlvl` INTEGER,"
-                    + "`members` VARCHAR,"
-                    + "`challengelist` VARCHAR,"
-                    + "`challengelisttimes` VARCHAR,"
-                    + "`name` VARCHAR,"
-                    + "`locale` VARCHAR NOT NULL)");
-                set.executeBatch();
-                set.clearBatch();
-            }
-            if (updateCheck == false) {
-
+            try (Connection con = pool.getConnection()) {
+                new ConnectionUpdater(con, mySQL).update();
             }
             closed = false;
         } else if (closed == true && db != null) {
@@ -142,393 +146,500 @@ public final class ASConnection {
         }
     }
 
-    public boolean isValid() {
-        try {
-            if (con.isClosed()) {
-                return false;
-            }
-        } catch (SQLException e) {
-            return false;
-        }
-        try (PreparedStatement stmt = this.con.prepareStatement("SELECT 1")) {
-            stmt.executeQuery();
-            return true;
-        } catch (Throwable e) {
-            return false;
-        }
-    }
-
-    public void reconnect() {
-        try {
-            close();
-            closed = false;
-            con = db.forceConnection();
-        } catch (SQLException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-    }
-
+    @Override
     public boolean setSpawnPosition(Position pos) {
         int x = pos.getFloorX();
         int y = pos.getFloorY();
         int z = pos.getFloorZ();
-        try (PreparedStatement stmt = con.prepareStatement("UPDATE `island` SET `spawnX` = ?, `spawnY` = ?, `spawnZ` = ? WHERE `isSpawn` = '1'")) {
-            stmt.setInt(1, x);
-            stmt.setInt(2, y);
-            stmt.setInt(3, z);
-            stmt.addBatch();
-            stmt.executeBatch();
-            stmt.close();
-            return true;
-        } catch (SQLException ex) {
+        IslandData spawn = islandCache.getSpawn();
+        if (spawn != null) {
+            spawn.homeX = x;
+            spawn.homeY = y;
+            spawn.homeZ = z;
         }
-        return false;
+        writer.submit(spawn != null ? rowKey(spawn) : null, "setSpawnPosition", con -> {
+            try (PreparedStatement stmt = con.prepareStatement(UPDATE_SPAWN_POSITION)) {
+                stmt.setInt(1, x);
+                stmt.setInt(2, y);
+                stmt.setInt(3, z);
+                stmt.setBoolean(4, true);
+                stmt.addBatch();
+                stmt.executeBatch();
+            }
+        });
+        return true;
     }
 
-    public IslandData getIslandLocation(String levelName, int X, int Z) {
-        int id = plugin.getIsland().generateIslandKey(X, Z);
-        IslandData database = new IslandData(levelName, X, Z, Settings.protectionrange);
-        try (Statement stmt = con.createStatement()) {
-            String l = levelName;
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island` WHERE(`world` = '" + l + "' AND `islandId` = '" + id + "')");
+    /**
+     * Loads every island into the registry, this is the only time the
+     * island table is read.
+     */
+    private void loadIslands() {
+        islandCache.clear();
+        long start = System.nanoTime();
+        try (Connection con = readPool.getConnection(); PreparedStatement stmt = con.prepareStatement(SELECT_ISLANDS)) {
+            // Stream the rows instead of buffering the whole table
+            stmt.setFetchSize(Settings.databaseFetchSize);
+            ResultSet set = stmt.executeQuery();
             if (set.isClosed()) {
-                return database;
+                return;
             }
             while (set.next()) {
-                database = new IslandData(set.getString("world"), set.getInt("x"), set.getInt("y"), set.getInt("z"), set.getInt("spawnX"), set.getInt("spawnY"), set.getInt("spawnZ"), set.getInt("psize"), set.getString("name"), set.getString("owner"), set.getString("biome"), set.getInt("id"), set.getInt("islandId"), set.getBoolean("locked"), set.getString("protection"), set.getBoolean("isSpawn"));
-                break;
+                islandCache.add(RowMapper.toIsland(set));
             }
-            stmt.close();
+            stats.record("loadIslands", start);
         } catch (SQLException ex) {
+            stats.error("loadIslands", ex);
+            JDBCUtilities.printSQLException(ex);
         }
-        return database;
+        Utils.send("&eLoaded " + islandCache.size() + " islands into memory");
+    }
+
+    @Override
+    public IslandData getIslandLocation(String levelName, int X, int Z) {
+        return getIslandAt(levelName, X, Z);
+    }
+
+    @Override
+    public IslandData getIslandAt(String levelName, int X, int Z) {
+        return islandCache.getAt(levelName, plugin.getIsland().generateIslandKey(levelName, X, Z));
+    }
+
+    @Override
+    public IslandData getIslandInCell(String levelName, long islandId) {
+        return islandCache.getAt(levelName, islandId);
     }
 
+    @Override
     public ArrayList<IslandData> getIslands(String owner) {
-        ArrayList<IslandData> pd = new ArrayList<>();
-        try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island` WHERE `owner` = '" + owner + "'");
-            if (set.isClosed()) {
-                return pd;
-            }
-            while (set.next()) {
-                pd.add(new IslandData(set.getString("world"), set.getInt("x"), set.getInt("y"), set.getInt("z"), set.getInt("spawnX"), set.getInt("spawnY"), set.getInt("spawnZ"), set.getInt("psize"), set.getString("name"), set.getString("owner"), set.getString("biome"), set.getInt("id"), set.getInt("islandId"), set.getBoolean("locked"), set.getString("protection"), set.getBoolean("isSpawn")));
-            }
-            stmt.close();
-        } catch (SQLException ex) {}
-        return pd;
+        return islandCache.getIslands(owner);
     }
 
+    @Override
     public ArrayList<IslandData> getIslands(String owner, String levelName) {
-        ArrayList<IslandData> pd = new ArrayList<>();
-        try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island` WHERE `owner` = '" + owner + "' AND `world` = '" + levelName + "'");
-            if (set.isClosed()) {
-                return pd;
-            }
-            while (set.next()) {
-                pd.add(new IslandData(set.getString("world"), set.getInt("x"), set.getInt("y"), set.getInt("z"), set.getInt("spawnX"), set.getInt("spawnY"), set.getInt("spawnZ"), set.getInt("psize"), set.getString("name"), set.getString("owner"), set.getString("biome"), set.getInt("id"), set.getInt("islandId"), set.getBoolean("locked"), set.getString("protection"), set.getBoolean("isSpawn")));
-            }
-            stmt.close();
-        } catch (SQLException ex) {}
-        return pd;
+        return islandCache.getIslands(owner, levelName);
     }
 
+    @Override
     public IslandData getIsland(String name, int homes) {
-        // safe block
-        IslandData pd = null;
-        try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island` WHERE(`owner` = '" + name + "' AND `id` = '" + homes + "')");
-            if (set.isClosed()) {
-                return pd;
-            }
-            pd = new IslandData(set.getString("world"), set.getInt("x"), set.getInt("y"), set.getInt("z"), set.getInt("spawnX"), set.getInt("spawnY"), set.getInt("spawnZ"), set.getInt("psize"), set.getString("name"), set.getString("owner"), set.getString("biome"), set.getInt("id"), set.getInt("islandId"), set.getBoolean("locked"), set.getString("protection"), set.getBoolean("isSpawn"));
-            stmt.close();
-        } catch (SQLException ex) {}
-        return pd;
+        return islandCache.getIsland(name, homes);
     }
 
+    @Override
     public boolean deleteIsland(IslandData pd) {
-        // deprecated block
-        boolean result = false;
-        try {
+        IslandData removed = islandCache.remove(pd);
+        final int id = pd.getId();
+        final String owner = pd.getOwner();
+        final String levelName = pd.getLevelName();
+        final int x = (removed != null ? removed : pd).getCenter().getFloorX();
+        final int z = (removed != null ? removed : pd).getCenter().getFloorZ();
+        writer.submit(rowKey(removed != null ? removed : pd), "deleteIsland", con -> {
             PreparedStatement set;
-            if (pd.getId() >= 0) {
-                set = con.prepareStatement("DELETE FROM `island` WHERE(`id` = ? AND `owner` = ?)");
-                set.setInt(1, pd.getId());
-                set.setString(2, pd.getOwner());
+            if (id >= 0) {
+                set = con.prepareStatement(DELETE_ISLAND);
+                set.setInt(1, id);
+                set.setString(2, owner);
             } else {
-                set = con.prepareStatement("DELETE FROM `island` WHERE(`world` = ? AND `x` = ? AND `z` = ?)");
-                set.setString(1, pd.getLevelName());
-                set.setInt(2, pd.getCenter().getFloorX());
-                set.setInt(3, pd.getCenter().getFloorZ());
+                set = con.prepareStatement(DELETE_ISLAND_AT);
+                set.setString(1, levelName);
+                set.setInt(2, x);
+                set.setInt(3, z);
+            }
+            try {
+                set.execute();
+            } finally {
+                set.close();
             }
-            set.execute();
-            result = true;
-        } catch (SQLException ex) {}
-        return result;
+        });
+        return true;
+    }
+
+    @Override
+    public boolean reserveCell(String levelName, long islandId) {
+        return islandCache.reserve(levelName, islandId);
+    }
+
+    @Override
+    public void releaseCell(String levelName, long islandId) {
+        islandCache.release(levelName, islandId);
     }
 
+    @Override
     public IslandData getSpawn() {
-        // safe block
-        IslandData pd = null;
-        if (islandSpawn != null) {
-            return islandSpawn;
-        }
-        try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island` WHERE `isSpawn` = '1'");
-            if (set.isClosed()) {
-                return pd;
-            }
+        return islandCache.getSpawn();
+    }
 
-            while (set.next()) {
-                pd = new IslandData(set.getString("world"), set.getInt("x"), set.getInt("y"), set.getInt("z"), set.getInt("spawnX"), set.getInt("spawnY"), set.getInt("spawnZ"), set.getInt("psize"), set.getString("name"), set.getString("owner"), set.getString("biome"), set.getInt("id"), set.getInt("islandId"), set.getBoolean("locked"), set.getString("protection"), set.getBoolean("isSpawn"));
-                break;
-            }
-            stmt.close();
-        } catch (SQLException ex) {}
-        islandSpawn = pd;
-        return pd;
+    @Override
+    public AsyncDatabase async() {
+        return async;
     }
 
-    public IslandData getIslandById(int id) {
-        // safe block
-        IslandData pd = null;
-        try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island` WHERE `islandId` = '" + id + "'");
-            if (set.isClosed()) {
-                return pd;
-            }
-            while (set.next()) {
-                pd = new IslandData(set.getString("world"), set.getInt("x"), set.getInt("y"), set.getInt("z"), set.getInt("spawnX"), set.getInt("spawnY"), set.getInt("spawnZ"), set.getInt("psize"), set.getString("name"), set.getString("owner"), set.getString("biome"), set.getInt("id"), set.getInt("islandId"), set.getBoolean("locked"), set.getString("protection"), set.getBoolean("isSpawn"));
-                break;
-            }
-            stmt.close();
-        } catch (SQLException ex) {}
-        return pd;
+    @Override
+    public QueryStats getStats() {
+        return stats;
     }
 
+    @Override
     public void close() {
-        try {
-            this.closed = true;
-            this.con.close();
-            // Clear all variables
-            islandCache.clear();
-            islandSpawn = null;
-        } catch (SQLException ex) {
+        // Let the pending writes reach the database first
+        players.flush();
+        async.shutdown();
+        writer.shutdown();
+        this.closed = true;
+        if (readPool != pool) {
+            readPool.close();
         }
+        this.pool.close();
+        // Clear all variables
+        islandCache.clear();
+        sessions.clear();
     }
 
-    public boolean createIsland(IslandData pd) {
-        try (PreparedStatement set = con.prepareStatement("INSERT INTO `island` (`id`, `islandId`, `x`, `y`, `z`, `isSpawn`, `psize`, `owner`, `name`, `world`, `biome`, `locked`, `protection`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);")) {
-            set.setInt(1, pd.getId());
-            set.setInt(2, pd.getIslandId());
-            set.setInt(3, pd.getCenter().getFloorX());
-            set.setInt(4, pd.getCenter().getFloorY());
-            set.setInt(5, pd.getCenter().getFloorZ());
-            set.setBoolean(6, pd.isSpawn());
-            set.setInt(7, pd.getProtectionSize());
-            set.setString(8, pd.getOwner());
-            set.setString(9, pd.getName());
-            set.setString(10, pd.getLevelName());
-            set.setString(11, pd.getBiome());
-            set.setBoolean(12, pd.isLocked());
-            set.setString(13, pd.getSettings());
-            set.addBatch();
-            set.executeBatch();
-            set.close();
-            return true;
-        } catch (BatchUpdateException b) {
-            JDBCUtilities.printBatchUpdateException(b);
-        } catch (SQLException ex) {
-        }
-        return false;
-    }
-
-    public boolean saveIsland(IslandData pd) {
-        try (PreparedStatement stmt = con.prepareStatement("UPDATE `island` SET `name` = ?, `biome` = ?, `locked` = ?,`isSpawn` = ?, `protection` = ?, `spawnX` = ?, `spawnY` = ?, `spawnZ` = ? WHERE(`id` = '" + pd.getId() + "' AND `owner` = '" + pd.getOwner() + "')")) {
-            stmt.setString(1, pd.getName());
-            stmt.setString(2, pd.getBiome());
-            stmt.setBoolean(3, pd.isLocked());
-            stmt.setBoolean(4, pd.isSpawn());
-            stmt.setString(5, pd.getSettings());
-            stmt.setInt(6, pd.homeX);
-            stmt.setInt(7, pd.homeY);
-            stmt.setInt(8, pd.homeZ);
-            stmt.addBatch();
-            stmt.executeBatch();
-            stmt.close();
-            return true;
-        } catch (SQLException ex) {
+    @Override
+    public boolean createIsland(IslandData island) {
+        IslandData pd = island.snapshot();
+        // Waits for the row, a cell that is taken in the database (another
+        // server, or the unique index) must go back to the allocator
+        boolean created = writer.call(rowKey(pd), "createIsland", con -> {
+            try (PreparedStatement set = con.prepareStatement(INSERT_ISLAND)) {
+                set.setInt(1, pd.getId());
+                set.setLong(2, pd.getIslandId());
+                set.setInt(3, pd.getCenter().getFloorX());
+                set.setInt(4, pd.getCenter().getFloorY());
+                set.setInt(5, pd.getCenter().getFloorZ());
+                set.setBoolean(6, pd.isSpawn());
+                set.setInt(7, pd.getProtectionSize());
+                set.setString(8, pd.getOwner());
+                set.setString(9, pd.getName());
+                set.setString(10, pd.getLevelName());
+                set.setString(11, pd.getBiome());
+                set.setBoolean(12, pd.isLocked());
+                set.setLong(13, pd.getFlags());
+                set.addBatch();
+                set.executeBatch();
+            }
+        });
+        if (created) {
+            islandCache.add(island);
         }
-        return false;
+        return created;
+    }
+
+    @Override
+    public boolean saveIsland(IslandData island) {
+        // The island may have become (or stopped being) the spawn, or
+        // changed its owner
+        islandCache.add(island);
+        IslandData pd = island.snapshot();
+        final int id = pd.getId();
+        final String owner = pd.getOwner();
+        writer.submit(rowKey(pd), "saveIsland", con -> {
+            try (PreparedStatement stmt = con.prepareStatement(UPDATE_ISLAND)) {
+                stmt.setString(1, pd.getName());
+                stmt.setString(2, pd.getBiome());
+                stmt.setBoolean(3, pd.isLocked());
+                stmt.setBoolean(4, pd.isSpawn());
+                stmt.setLong(5, pd.getFlags());
+                stmt.setInt(6, pd.homeX);
+                stmt.setInt(7, pd.homeY);
+                stmt.setInt(8, pd.homeZ);
+                stmt.setInt(9, id);
+                stmt.setString(10, owner);
+                stmt.addBatch();
+                stmt.executeBatch();
+            }
+        });
+        return true;
     }
 
+    @Override
     public ArrayList<String> getWorlds() {
         ArrayList<String> world = new ArrayList<>();
-        try (Statement kt = con.createStatement()) {
-            ResultSet set = kt.executeQuery("SELECT `world` FROM `worlds`");
+        long start = System.nanoTime();
+        try (Connection con = readPool.getConnection(); PreparedStatement kt = con.prepareStatement(SELECT_WORLDS)) {
+            ResultSet set = kt.executeQuery();
             if (set.isClosed()) {
                 return world;
             }
             while (set.next()) {
-                world.add(set.getString("world"));
+                world.add(set.getString(1));
             }
+            stats.record("getWorlds", start);
         } catch (SQLException ex) {
+            stats.error("getWorlds", ex);
         }
         return world;
     }
 
+    @Override
     public boolean saveWorlds(ArrayList<String> pd) {
-        try (PreparedStatement set = con.prepareStatement("INSERT INTO `worlds` (`world`) VALUES (?);")) {
-            ArrayList<String> second = getWorlds();
-            for (String pd2 : pd) {
-                if (!second.contains(pd2)) {
-                    set.setString(1, pd2);
-                    set.addBatch();
-                    set.executeBatch();
+        // The known worlds are read on the writer connection, so the server
+        // thread never waits for the database
+        ArrayList<String> names = new ArrayList<>(pd);
+        CompletableFuture<Boolean> queued = writer.submit("saveWorlds", con -> {
+            ArrayList<String> second = new ArrayList<>();
+            try (PreparedStatement kt = con.prepareStatement(SELECT_WORLDS); ResultSet set = kt.executeQuery()) {
+                while (set.next()) {
+                    second.add(set.getString(1));
                 }
             }
-            set.close();
-            return true;
-        } catch (SQLException ex) {
-        }
-        return false;
+            try (PreparedStatement set = con.prepareStatement(INSERT_WORLD)) {
+                for (String pd2 : names) {
+                    if (!second.contains(pd2)) {
+                        set.setString(1, pd2);
+                        set.addBatch();
+                    }
+                }
+                set.executeBatch();
+            }
+        });
+        // Still pending, or already failed because the queue is shut down
+        return queued.getNow(true);
     }
 
+    @Override
     public List<String> getPlayersData() {
         List<String> playersData = new ArrayList<>();
-        try (Statement kt = con.createStatement()) {
-            ResultSet set = kt.executeQuery("SELECT * FROM `players` ");
+        long start = System.nanoTime();
+        try (Connection con = readPool.getConnection(); PreparedStatement kt = con.prepareStatement(SELECT_PLAYER_NAMES)) {
+            kt.setFetchSize(Settings.databaseFetchSize);
+            ResultSet set = kt.executeQuery();
             if (set.isClosed()) {
                 return playersData;
             }
             while (set.next()) {
-                playersData.add(set.getString("player"));
+                playersData.add(set.getString(1));
             }
+            stats.record("getPlayersData", start);
         } catch (SQLException ex) {
+            stats.error("getPlayersData", ex);
         }
         return playersData;
     }
 
-    @SuppressWarnings("unchecked")
+    @Override
+    public HashMap<String, ArrayList<String>> getTeams() {
+        HashMap<String, ArrayList<String>> teams = new HashMap<>();
+        long start = System.nanoTime();
+        try (Connection con = readPool.getConnection(); PreparedStatement stmt = con.prepareStatement(SELECT_TEAMS)) {
+            stmt.setFetchSize(Settings.databaseFetchSize);
+            try (ResultSet set = stmt.executeQuery()) {
+                while (set.next()) {
+                    teams.put(set.getString(1), Utils.stringToArray(set.getString(2), ", "));
+                }
+            }
+            stats.record("getTeams", start);
+        } catch (SQLException ex) {
+            stats.error("getTeams", ex);
+        }
+        return teams;
+    }
+
+    @Override
     public PlayerData getPlayerData(String st) {
-        // TESTED SUCCESS
-        PlayerData pd = null;
-        try (Statement kt = con.createStatement()) {
-            ResultSet set = kt.executeQuery("SELECT * FROM `players` WHERE `player` = '" + st + "'");
-            if (set.isClosed()) {
+        PlayerData pd = sessions.get(st);
+        if (pd != null) {
+            return pd;
+        }
+        // Changes that are still waiting in the save queue are newer than the row
+        pd = players.getPending(st);
+        if (pd != null) {
+            return pd;
+        }
+        long start = System.nanoTime();
+        try (Connection con = readPool.getConnection(); PreparedStatement kt = con.prepareStatement(SELECT_PLAYER)) {
+            kt.setString(1, st);
+            ResultSet set = kt.executeQuery();
+            if (set.isClosed() || !set.next()) {
+                stats.record("getPlayerData", start);
                 return pd;
             }
-            pd = new PlayerData(
-                set.getString("player"),
-                set.getInt("homes"),
-                Utils.stringToArray(set.getString("members"), ", "),
-                (HashMap<String, Boolean>) Utils.stringToMap(set.getString("challengelist")),
-                (HashMap<String, Integer>) Utils.stringToMap(set.getString("challengelisttimes")),
-                set.getInt("islandlvl"),
-                set.getBoolean("inTeam"),
-                set.getString("teamLeader"),
-                set.getString("teamIslandLocation"),
-                set.getInt("resetleft"),
-                Utils.stringToArray(set.getString("banList"), ", "),
-                set.getString("locale"));
+            pd = RowMapper.toPlayer(set);
+            try (PreparedStatement cs = con.prepareStatement(SELECT_CHALLENGES)) {
+                cs.setString(1, st);
+                ResultSet challenges = cs.executeQuery();
+                while (challenges.next()) {
+                    pd.challengeList.put(challenges.getString(1), challenges.getBoolean(2));
+                    pd.challengeListTimes.put(challenges.getString(1), challenges.getInt(3));
+                }
+            }
+            stats.record("getPlayerData", start);
         } catch (SQLException ex) {
+            stats.error("getPlayerData", ex);
         }
         return pd;
     }
 
+    @Override
     public boolean createPlayer(String p) {
-        // TESTED SUCCESS
-        try (PreparedStatement set = con.prepareStatement("INSERT INTO `players` ("
-            + "`player`, "
-            + "`homes`, "
-            + "`resetleft`, "
-            + "`banlist`, "
-            + "`teamleader`, "
-            + "`teamislandlocation`, "
-            + "`inteam` , "
-            + "`islandlvl`, "
-            + "`members`,"
-            + "`challengelist`, "
-            + "`challengelisttimes`, "
-            + "`name`, "
-            + "`locale`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);")) {
-            PlayerData pd = new PlayerData(p, 0, Settings.reset);
-            set.setString(1, pd.playerName);
-            set.setInt(2, pd.homes);
-            set.setInt(3, pd.resetleft);
-            set.setString(4, Utils.arrayToString(pd.banList));
-            set.setString(5, pd.teamLeader);
-            set.setString(6, pd.teamIslandLocation);
-            set.setBoolean(7, pd.inTeam);
-            set.setInt(8, pd.islandLevel);
-            set.setString(9, Utils.arrayToString(pd.members));
-            set.setString(10, Utils.hashToString(pd.challengeList));
-            set.setString(11, Utils.hashToString(pd.challengeListTimes));
-            set.setString(12, pd.name);
-            set.setString(13, pd.pubLocale);
-            set.addBatch();
-
-            set.executeBatch();
-            set.close();
-            return true;
-        } catch (BatchUpdateException b) {
-            JDBCUtilities.printBatchUpdateException(b);
-        } catch (SQLException ex) {
+        PlayerData pd = new PlayerData(p, 0, Settings.reset);
+        return writer.call(p, "createPlayer", con -> {
+            try (PreparedStatement set = con.prepareStatement(INSERT_PLAYER)) {
+                set.setString(1, pd.playerName);
+                set.setInt(2, pd.homes);
+                set.setInt(3, pd.resetleft);
+                set.setString(4, Utils.arrayToString(pd.banList));
+                set.setString(5, pd.teamLeader);
+                set.setString(6, pd.teamIslandLocation);
+                set.setBoolean(7, pd.inTeam);
+                set.setInt(8, pd.islandLevel);
+                set.setString(9, Utils.arrayToString(pd.members));
+                set.setString(10, pd.name);
+                set.setString(11, pd.pubLocale);
+                set.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public void queuePlayerData(PlayerData pd) {
+        players.add(pd);
+    }
+
+    @Override
+    public void flushPlayerData(String player) {
+        players.flush(player);
+    }
+
+    @Override
+    public CompletableFuture<PlayerData> openSession(String player) {
+        PlayerData open = sessions.get(player);
+        if (open != null) {
+            return CompletableFuture.completedFuture(open);
+        }
+        CompletableFuture<PlayerData> load = new CompletableFuture<>();
+        CompletableFuture<PlayerData> running = loading.putIfAbsent(player, load);
+        if (running != null) {
+            return running;
         }
-        return false;
+        async.supply(() -> {
+            PlayerData pd = getPlayerData(player);
+            if (pd == null && createPlayer(player)) {
+                pd = getPlayerData(player);
+            }
+            return pd;
+        }).whenComplete((pd, ex) -> {
+            // Publishing under the map lock keeps closeSession() from
+            // slipping in between the check and the put
+            loading.computeIfPresent(player, (name, current) -> {
+                if (current != load) {
+                    return current;
+                }
+                if (pd != null) {
+                    sessions.put(player, pd);
+                }
+                return null;
+            });
+            if (ex != null) {
+                load.completeExceptionally(ex);
+            } else {
+                load.complete(pd);
+            }
+        });
+        return load;
     }
 
+    @Override
+    public void closeSession(String player) {
+        // A load that is still running finds its entry gone and is dropped
+        loading.remove(player);
+        players.flush(player);
+        sessions.remove(player);
+    }
+
+    @Override
     public boolean savePlayerData(PlayerData pd) {
-        // TESTED SUCCESS
-        try (PreparedStatement stmt = con.prepareStatement(
-            "UPDATE `players` SET "
-                + "`homes` = ?, "
-                + "`resetleft` = ?, "
-                + "`banlist` = ?, "
-                + "`teamleader` = ?, "
-                + "`teamislandlocation` = ?, "
-                + "`inteam` = ?, "
-                + "`islandlvl` = ?, "
-                + "`members` = ?, "
-                + "`challengelist` = ?, "
-                + "`challengelisttimes` = ?, "
-                + "`name` = ?, "
-                + "`locale` = ?, "
-                + "WHERE `player` = '" + pd.playerName + "'")) {
-            stmt.setInt(1, pd.homes);
-            stmt.setInt(2, pd.resetleft);
-            stmt.setString(3, Utils.arrayToString(pd.banList));
-            stmt.setString(4, pd.teamLeader);
-            stmt.setString(5, pd.teamIslandLocation);
-            stmt.setBoolean(6, pd.inTeam);
-            stmt.setInt(7, pd.islandLevel);
-            stmt.setString(8, Utils.arrayToString(pd.members));
-            stmt.setString(9, Utils.hashToString(pd.challengeList));
-            stmt.setString(10, Utils.hashToString(pd.challengeListTimes));
-            stmt.setString(11, pd.name);
-            stmt.setString(12, pd.pubLocale);
-            stmt.addBatch();
-            stmt.executeBatch();
-
-            stmt.close();
-            return true;
-        } catch (SQLException ex) {
+        PlayerData copy = pd.snapshot();
+        boolean saved = writer.call(pd.playerName, "savePlayerData", con -> {
+            try (PreparedStatement stmt = con.prepareStatement(UPDATE_PLAYER)) {
+                bindPlayer(stmt, copy);
+                stmt.executeUpdate();
+            }
+            writeChallenges(con, Collections.singletonList(copy));
+        });
+        if (!saved) {
+            pd.restoreChanges(copy);
         }
-        return false;
+        return saved;
+    }
+
+    private void writePlayers(List<PlayerData> batch) {
+        // Each player stays on the writer of its row, the writers save
+        // their share in parallel
+        HashMap<Integer, List<PlayerData>> shares = new HashMap<>();
+        for (PlayerData pd : batch) {
+            shares.computeIfAbsent(writer.lane(pd.playerName), k -> new ArrayList<>()).add(pd);
+        }
+        for (List<PlayerData> share : shares.values()) {
+            writer.submit(share.get(0).playerName, "writePlayers", con -> {
+                try (PreparedStatement stmt = con.prepareStatement(UPDATE_PLAYER)) {
+                    for (PlayerData pd : share) {
+                        bindPlayer(stmt, pd);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                writeChallenges(con, share);
+            }).thenAccept(success -> players.written(share, success));
+        }
+    }
+
+    private void bindPlayer(PreparedStatement stmt, PlayerData pd) throws SQLException {
+        stmt.setInt(1, pd.homes);
+        stmt.setInt(2, pd.resetleft);
+        stmt.setString(3, Utils.arrayToString(pd.banList));
+        stmt.setString(4, pd.teamLeader);
+        stmt.setString(5, pd.teamIslandLocation);
+        stmt.setBoolean(6, pd.inTeam);
+        stmt.setInt(7, pd.islandLevel);
+        stmt.setString(8, Utils.arrayToString(pd.members));
+        stmt.setString(9, pd.name);
+        stmt.setString(10, pd.pubLocale);
+        stmt.setString(11, pd.playerName);
+    }
+
+    /**
+     * Upserts only the challenges that changed since the last save
+     */
+    private void writeChallenges(Connection con, List<PlayerData> batch) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(mySQL ? UPSERT_CHALLENGE_MYSQL : UPSERT_CHALLENGE_SQLITE)) {
+            int rows = 0;
+            for (PlayerData pd : batch) {
+                for (String challenge : pd.changedChallenges) {
+                    stmt.setString(1, pd.playerName);
+                    stmt.setString(2, challenge);
+                    stmt.setBoolean(3, pd.challengeList.getOrDefault(challenge, false));
+                    stmt.setInt(4, pd.challengeListTimes.getOrDefault(challenge, 0));
+                    stmt.addBatch();
+                    rows++;
+                }
+            }
+            if (rows > 0) {
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Writes of the same island share a writer, so they stay in order
+     */
+    private static String rowKey(IslandData pd) {
+        return pd.getLevelName() + ":" + pd.getIslandId();
     }
 
     ///------------ FACTION DATA ------------
 
     public int getFactionCount() {
         int currentCount = 0;
-        try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `faction`");
-            if (set.isClosed()) return 0;
-            while (set.next()) currentCount++;
+        long start = System.nanoTime();
+        try (Connection con = readPool.getConnection(); PreparedStatement stmt = con.prepareStatement("SELECT COUNT(*) FROM `faction`");
+             ResultSet set = stmt.executeQuery()) {
+            if (set.next()) {
+                currentCount = set.getInt(1);
+            }
+            stats.record("getFactionCount", start);
         } catch (SQLException e) {
-            e.printStackTrace();
+            stats.error("getFactionCount", e);
         }
 
         return currentCount;
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.player.PlayerData;
+import suomicraftpe.storage.IslandData;
+import suomicraftpe.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous access to a {@link Database}. Queries run on the database
+ * executor and the returned futures complete there, use
+ * {@code thenAcceptAsync(callback, TaskManager.MAIN_THREAD)} to get back to
+ * the server thread before touching players or levels.
+ * <p>
+ * Island reads are served by the in-memory registry and complete
+ * immediately, they are here so callers do not need to care about it.
+ *
+ * @author Adam Matthew
+ */
+public final class AsyncDatabase {
+
+    private final Database db;
+    private final ExecutorService executor;
+
+    public AsyncDatabase(Database db, int threads) {
+        this.db = db;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "ASkyBlock-Query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<IslandData> getIsland(String owner, int homes) {
+        return CompletableFuture.completedFuture(db.getIsland(owner, homes));
+    }
+
+    public CompletableFuture<ArrayList<IslandData>> getIslands(String owner) {
+        return CompletableFuture.completedFuture(db.getIslands(owner));
+    }
+
+    public CompletableFuture<IslandData> getIslandLocation(String levelName, int x, int z) {
+        return CompletableFuture.completedFuture(db.getIslandLocation(levelName, x, z));
+    }
+
+    public CompletableFuture<PlayerData> getPlayerData(String player) {
+        return supply(() -> db.getPlayerData(player));
+    }
+
+    public CompletableFuture<Boolean> createPlayer(String player) {
+        return supply(() -> db.createPlayer(player));
+    }
+
+    public CompletableFuture<Boolean> savePlayerData(PlayerData pd) {
+        return supply(() -> db.savePlayerData(pd));
+    }
+
+    public CompletableFuture<Boolean> createIsland(IslandData pd) {
+        return supply(() -> db.createIsland(pd));
+    }
+
+    public CompletableFuture<Boolean> saveIsland(IslandData pd) {
+        return supply(() -> db.saveIsland(pd));
+    }
+
+    public CompletableFuture<Boolean> deleteIsland(IslandData pd) {
+        return supply(() -> db.deleteIsland(pd));
+    }
+
+    /**
+     * Run any query on the database executor
+     *
+     * @param query The query
+     * @return Future of the query result
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(query, executor);
+        future.exceptionally(ex -> {
+            Utils.send("&cAsynchronous database query failed: " + ex.getMessage());
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Waits for the running queries and stops the executor
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.database.variables.AbstractDatabase;
+import suomicraftpe.utils.Utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small JDBC connection pool on top of {@link AbstractDatabase}.
+ * Connections handed out by {@link #getConnection()} go back to the pool
+ * when they are closed. Validation, retiring old connections and leak
+ * detection all happen on the housekeeper thread so a dead connection
+ * is never noticed in the middle of a game tick.
+ *
+ * @author Adam Matthew
+ */
+public final class ConnectionPool {
+
+    private final AbstractDatabase db;
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeout;
+    private final long idleTimeout;
+    private final long maxLifetime;
+    private final long leakDetectionThreshold;
+    private final int statementCacheSize;
+    private final boolean readOnly;
+
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+    private final List<Entry> inUse = new ArrayList<>();
+    private final ScheduledExecutorService housekeeper;
+    private int total = 0;
+    private boolean closed = false;
+
+    /**
+     * @param db                     The backend that creates the physical connections
+     * @param minSize                Connections kept open at all times
+     * @param maxSize                Upper limit of open connections
+     * @param connectionTimeout      How long getConnection() waits for a free connection, in ms
+     * @param idleTimeout            Idle connections above minSize are closed after this, in ms
+     * @param maxLifetime            Connections are replaced after this, in ms
+     * @param leakDetectionThreshold A connection borrowed longer than this is reported, in ms (0 to disable)
+     * @param statementCacheSize     Prepared statements kept per connection (0 to disable)
+     */
+    public ConnectionPool(AbstractDatabase db, int minSize, int maxSize, long connectionTimeout, long idleTimeout, long maxLifetime, long leakDetectionThreshold, int statementCacheSize) throws SQLException, ClassNotFoundException {
+        this(db, minSize, maxSize, connectionTimeout, idleTimeout, maxLifetime, leakDetectionThreshold, statementCacheSize, false);
+    }
+
+    /**
+     * @param readOnly Open the connections with {@link AbstractDatabase#createReadConnection()}
+     */
+    public ConnectionPool(AbstractDatabase db, int minSize, int maxSize, long connectionTimeout, long idleTimeout, long maxLifetime, long leakDetectionThreshold, int statementCacheSize, boolean readOnly) throws SQLException, ClassNotFoundException {
+        this.db = db;
+        this.readOnly = readOnly;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.connectionTimeout = connectionTimeout;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        this.statementCacheSize = statementCacheSize;
+        // Fail fast if the database can not be reached at all
+        synchronized (this) {
+            idle.add(newEntry());
+        }
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, readOnly ? "ASkyBlock-ReadPool" : "ASkyBlock-Pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 0, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Borrow a connection, closing it returns it to the pool.
+     *
+     * @return Pooled connection
+     * @throws SQLException if no connection could be obtained in time
+     */
+    public Connection getConnection() throws SQLException {
+        long deadline = System.currentTimeMillis() + connectionTimeout;
+        Entry entry = null;
+        synchronized (this) {
+            while (entry == null) {
+                if (closed) {
+                    throw new SQLException("The connection pool is closed");
+                }
+                entry = idle.pollFirst();
+                if (entry != null) {
+                    break;
+                }
+                if (total < maxSize) {
+                    // Reserve the slot, the connection is opened outside of the lock
+                    total++;
+                    break;
+                }
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new SQLException("Timed out waiting for a database connection (" + maxSize + " in use)");
+                }
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection");
+                }
+            }
+        }
+        if (entry == null) {
+            try {
+                entry = new Entry(connect());
+            } catch (SQLException | ClassNotFoundException ex) {
+                synchronized (this) {
+                    total--;
+                    notifyAll();
+                }
+                throw ex instanceof SQLException ? (SQLException) ex : new SQLException(ex);
+            }
+        }
+        synchronized (this) {
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrower = leakDetectionThreshold > 0 ? new Exception("Connection borrowed here") : null;
+            entry.leakReported = false;
+            inUse.add(entry);
+        }
+        return entry.proxy();
+    }
+
+    private void release(Entry entry) {
+        // The rollback talks to the server, so it runs before the pool is
+        // locked, only the borrower of this connection waits for it
+        boolean reusable = !entry.isExpired() && !isBroken(entry) && reset(entry);
+        synchronized (this) {
+            inUse.remove(entry);
+            entry.borrower = null;
+            if (reusable && !closed) {
+                entry.lastUsed = System.currentTimeMillis();
+                idle.addFirst(entry);
+                notifyAll();
+                return;
+            }
+            total--;
+            notifyAll();
+        }
+        close(entry);
+    }
+
+    /**
+     * Rolls back what the borrower left open
+     *
+     * @return false if the connection can not be used again
+     */
+    private boolean reset(Entry entry) {
+        try {
+            if (!entry.connection.getAutoCommit()) {
+                entry.connection.rollback();
+                entry.connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void housekeep() {
+        List<Entry> check = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // Leak detection
+            if (leakDetectionThreshold > 0) {
+                for (Entry entry : inUse) {
+                    if (!entry.leakReported && now - entry.borrowedAt > leakDetectionThreshold) {
+                        entry.leakReported = true;
+                        Utils.send("&cPossible connection leak, a connection has been in use for " + (now - entry.borrowedAt) + "ms");
+                        if (entry.borrower != null) {
+                            entry.borrower.printStackTrace();
+                        }
+                    }
+                }
+            }
+            for (Iterator<Entry> it = idle.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.isExpired() || (total > minSize && now - entry.lastUsed > idleTimeout)) {
+                    it.remove();
+                    discard(entry);
+                } else {
+                    check.add(entry);
+                }
+            }
+        }
+        // Validation runs off the lock and takes out one connection at a
+        // time, so a slow server only delays this thread
+        for (Entry entry : check) {
+            synchronized (this) {
+                if (closed || !idle.remove(entry)) {
+                    // Borrowed in the meantime
+                    continue;
+                }
+            }
+            boolean ok;
+            try {
+                ok = entry.connection.isValid(5);
+            } catch (SQLException ex) {
+                ok = false;
+            }
+            synchronized (this) {
+                if (ok && !closed) {
+                    idle.addLast(entry);
+                    notifyAll();
+                } else {
+                    discard(entry);
+                }
+            }
+        }
+        // Keep the minimum amount of connections warm
+        while (true) {
+            synchronized (this) {
+                if (closed || total >= minSize) {
+                    return;
+                }
+                total++;
+            }
+            Entry entry;
+            try {
+                entry = new Entry(connect());
+            } catch (SQLException | ClassNotFoundException ex) {
+                synchronized (this) {
+                    total--;
+                }
+                Utils.send("&cUnable to open a database connection: " + ex.getMessage());
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    discard(entry);
+                    return;
+                }
+                idle.addLast(entry);
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean isBroken(Entry entry) {
+        try {
+            return entry.connection.isClosed();
+        } catch (SQLException ex) {
+            return true;
+        }
+    }
+
+    private Connection connect() throws SQLException, ClassNotFoundException {
+        return readOnly ? db.createReadConnection() : db.createConnection();
+    }
+
+    private Entry newEntry() throws SQLException, ClassNotFoundException {
+        Entry entry = new Entry(connect());
+        total++;
+        return entry;
+    }
+
+    private void discard(Entry entry) {
+        total--;
+        close(entry);
+    }
+
+    private void close(Entry entry) {
+        if (entry.statements != null) {
+            entry.statements.close();
+        }
+        try {
+            entry.connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * @return Connections that are currently open
+     */
+    public synchronized int getTotalConnections() {
+        return total;
+    }
+
+    /**
+     * @return Connections that are currently borrowed
+     */
+    public synchronized int getActiveConnections() {
+        return inUse.size();
+    }
+
+    /**
+     * Closes every idle connection, borrowed connections are closed as
+     * soon as they are returned.
+     */
+    public void close() {
+        housekeeper.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            while (!idle.isEmpty()) {
+                discard(idle.poll());
+            }
+            notifyAll();
+        }
+    }
+
+    private final class Entry {
+
+        private final Connection connection;
+        private final StatementCache statements;
+        private final long created = System.currentTimeMillis();
+        private long lastUsed = created;
+        private long borrowedAt;
+        private Exception borrower;
+        private boolean leakReported;
+
+        private Entry(Connection connection) {
+            this.connection = connection;
+            this.statements = statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize) : null;
+        }
+
+        private boolean isExpired() {
+            return maxLifetime > 0 && System.currentTimeMillis() - created > maxLifetime;
+        }
+
+        private Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, new InvocationHandler() {
+                private boolean returned = false;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!returned) {
+                                returned = true;
+                                release(Entry.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned || connection.isClosed();
+                        default:
+                            if (returned) {
+                                throw new SQLException("Connection has already been returned to the pool");
+                            }
+                            if (statements != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                                return statements.prepare((String) args[0]);
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }
+            });
+        }
+    }
+}
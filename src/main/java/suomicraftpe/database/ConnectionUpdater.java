@@ -17,178 +17,597 @@
 package suomicraftpe.database;
 
 import suomicraftpe.ASkyBlock;
+import suomicraftpe.island.IslandManager;
 import suomicraftpe.storage.IslandData;
 import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
 
 /**
- * Renew the old sql database
+ * Renew the old sql database. Every schema change is a numbered migration,
+ * the newest applied number is kept in the `schema_version` table so each
+ * migration runs exactly once, in order, on both SQLite and MySQL.
+ * <p>
+ * New schema changes are added to the end of the list in the constructor
+ * and must never be edited once released.
  *
  * @author Adam Matthew
  */
 public class ConnectionUpdater {
 
     private final Connection con;
-    private final ArrayList<IndependantIsland> pd = new ArrayList<>();
-    private final ASkyBlock plugin;
+    private final boolean mySQL;
+    // World name -> grid size, island keys are cells of their own world
+    private final ToIntFunction<String> plotSizes;
+    private final List<Migration> migrations = new ArrayList<>();
 
-    public ConnectionUpdater(ASkyBlock plugin, Connection cone) {
-        this.plugin = plugin;
-        this.con = cone;
+    public ConnectionUpdater(Connection con, boolean mySQL) {
+        this(con, mySQL, levelName -> ASkyBlock.get().getPlotSize(levelName));
+    }
+
+    public ConnectionUpdater(Connection con, boolean mySQL, ToIntFunction<String> plotSizes) {
+        this.con = con;
+        this.mySQL = mySQL;
+        this.plotSizes = plotSizes;
 
-        checkStatement();
+        migrations.add(new Migration(1, "create tables", this::createTables));
+        migrations.add(new Migration(2, "update old island columns", this::updateIslandColumns));
+        migrations.add(new Migration(3, "add primary keys and indexes", this::createIndexes));
+        migrations.add(new Migration(4, "move challenges to their own table", this::createChallenges));
+        migrations.add(new Migration(5, "one island per grid cell", this::uniqueIslandCells));
+        migrations.add(new Migration(6, "collision free island keys", this::longIslandKeys));
+        migrations.add(new Migration(7, "island protection flags as a bitmask", this::islandFlags));
+        migrations.add(new Migration(8, "island keys on the grid of their world", this::worldIslandKeys));
     }
 
     /**
+     * Brings the database up to the newest schema
      *
+     * @throws SQLException if a migration fails, the failed migration is rolled back where the database allows it
      */
-    public void checkStatement() {
+    public void update() throws SQLException {
         try (Statement stmt = con.createStatement()) {
-            ResultSet set = stmt.executeQuery("SELECT * FROM `island`");
-            if (set.isClosed()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS `schema_version` (`version` INTEGER NOT NULL PRIMARY KEY,"
+                + "`description` VARCHAR(128) NOT NULL,"
+                + "`installed` BIGINT NOT NULL)");
+        }
+        int current = getVersion();
+        for (Migration migration : migrations) {
+            if (migration.version <= current) {
+                continue;
+            }
+            Utils.send("&eUpdating the database to version " + migration.version + " (" + migration.description + ")");
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                migration.step.run(con);
+                try (PreparedStatement stmt = con.prepareStatement("INSERT INTO `schema_version` (`version`, `description`, `installed`) VALUES (?, ?, ?)")) {
+                    stmt.setInt(1, migration.version);
+                    stmt.setString(2, migration.description);
+                    stmt.setLong(3, System.currentTimeMillis());
+                    stmt.executeUpdate();
+                }
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw new SQLException("Database migration " + migration.version + " (" + migration.description + ") failed: " + ex.getMessage(), ex);
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * @return The newest migration that has been applied, 0 for none
+     */
+    public int getVersion() throws SQLException {
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery("SELECT MAX(`version`) FROM `schema_version`")) {
+            return set.next() ? set.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Version 1: The original tables. Databases from before the versioning
+     * already have them, so this keeps them as they are.
+     */
+    private void createTables(Connection con) throws SQLException {
+        try (Statement set = con.createStatement()) {
+            set.executeUpdate("CREATE TABLE IF NOT EXISTS `island` (`id` INTEGER,"
+                + "`islandId` INTEGER NOT NULL,"
+                + "`x` INTEGER NOT NULL,"
+                + "`y` INTEGER NOT NULL,"
+                + "`z` INTEGER NOT NULL,"
+                + "`spawnX` INTEGER,"
+                + "`spawnY` INTEGER,"
+                + "`spawnZ` INTEGER,"
+                + "`isSpawn` BOOLEAN NOT NULL,"
+                + "`psize` INTEGER NOT NULL,"
+                + "`owner` VARCHAR(64) NOT NULL,"
+                + "`name` VARCHAR(128) NOT NULL,"
+                + "`world` VARCHAR(64) NOT NULL,"
+                + "`protection` VARCHAR(1024) NOT NULL,"
+                + "`biome` VARCHAR(64) NOT NULL,"
+                + "`locked` INTEGER NOT NULL)");
+            set.executeUpdate("CREATE TABLE IF NOT EXISTS `worlds` (`world` VARCHAR(64))");
+            set.executeUpdate("CREATE TABLE IF NOT EXISTS `players` (`player` VARCHAR(64) NOT NULL,"
+                + "`homes` INTEGER NOT NULL,"
+                + "`resetleft` INTEGER NOT NULL,"
+                + "`banlist` TEXT,"
+                + "`teamleader` VARCHAR(64),"
+                + "`teamislandlocation` VARCHAR(255),"
+                + "`inteam` BOOLEAN,"
+                + "`islandlvl` INTEGER,"
+                + "`members` TEXT,"
+                + "`challengelist` TEXT,"
+                + "`challengelisttimes` TEXT,"
+                + "`name` VARCHAR(128),"
+                + "`locale` VARCHAR(16) NOT NULL)");
+        }
+    }
+
+    /**
+     * Version 2: Island tables from the first releases miss some columns.
+     * They are detected from the table metadata and added with the values
+     * the old versions used.
+     */
+    private void updateIslandColumns(Connection con) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        DatabaseMetaData meta = con.getMetaData();
+        try (ResultSet set = meta.getColumns(con.getCatalog(), null, "island", null)) {
+            while (set.next()) {
+                columns.add(set.getString("COLUMN_NAME").toLowerCase());
+            }
+        }
+        StringBuilder protection = new StringBuilder();
+        for (IslandData.SettingsFlag flag : IslandData.SettingsFlag.values()) {
+            if (protection.length() > 0) {
+                protection.append(", ");
+            }
+            protection.append(Settings.defaultIslandSettings.getOrDefault(flag, false) == Boolean.TRUE);
+        }
+        try (Statement stmt = con.createStatement()) {
+            addColumn(stmt, columns, "id", "INTEGER DEFAULT 1");
+            addColumn(stmt, columns, "isSpawn", "BOOLEAN NOT NULL DEFAULT 0");
+            addColumn(stmt, columns, "psize", "INTEGER NOT NULL DEFAULT " + Settings.protectionrange);
+            addColumn(stmt, columns, "name", "VARCHAR(128) NOT NULL DEFAULT 'My Island'");
+            addColumn(stmt, columns, "biome", "VARCHAR(64) NOT NULL DEFAULT " + quote(Settings.defaultBiome.getName()));
+            addColumn(stmt, columns, "locked", "INTEGER NOT NULL DEFAULT 0");
+            addColumn(stmt, columns, "protection", "VARCHAR(1024) NOT NULL DEFAULT " + quote(protection.toString()));
+            if (!addColumn(stmt, columns, "islandId", "INTEGER NOT NULL DEFAULT 0")) {
                 return;
             }
+        }
+        // The island key used to be calculated from the position, the same
+        // way IslandManager.generateIslandKey() does
+        List<Object[]> positions = new ArrayList<>();
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery("SELECT DISTINCT `world`, `x`, `z` FROM `island`")) {
             while (set.next()) {
-                IndependantIsland ipd = new IndependantIsland();
-                try {
-                    ipd.id = set.getInt("id");
-                } catch (SQLException ex) {
-                    ipd.id = 1;
+                positions.add(new Object[]{set.getString(1), set.getInt(2), set.getInt(3)});
+            }
+        }
+        try (PreparedStatement stmt = con.prepareStatement("UPDATE `island` SET `islandId` = ? WHERE `world` = ? AND `x` = ? AND `z` = ?")) {
+            for (Object[] pos : positions) {
+                int distance = plotSizes.applyAsInt((String) pos[0]);
+                int x = (Integer) pos[1];
+                int z = (Integer) pos[2];
+                stmt.setInt(1, x / distance + z / distance * Integer.MAX_VALUE);
+                stmt.setString(2, (String) pos[0]);
+                stmt.setInt(3, x);
+                stmt.setInt(4, z);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Version 3: Keys and indexes for the lookups the plugin does.
+     * SQLite can not add a primary key to an existing table, a unique
+     * index gives the same guarantee there.
+     * <p>
+     * MySQL commits every ALTER and CREATE INDEX on its own, so a failed
+     * run is not rolled back. Every step checks whether it already ran,
+     * the migration can simply be run again.
+     */
+    private void createIndexes(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            // Older versions could insert a player twice, keep the first row
+            if (mySQL) {
+                if (!hasIndex(con, "players", "PRIMARY")) {
+                    removeDuplicatePlayers(con);
+                    stmt.executeUpdate("ALTER TABLE `players` ADD PRIMARY KEY (`player`)");
                 }
-                try {
-                    ipd.isSpawn = set.getBoolean("isSpawn");
-                } catch (SQLException ex) {
-                    ipd.isSpawn = false;
+            } else if (!hasIndex(con, "players", "players_player")) {
+                stmt.executeUpdate("DELETE FROM `players` WHERE rowid NOT IN (SELECT MIN(rowid) FROM `players` GROUP BY `player`)");
+                stmt.executeUpdate("CREATE UNIQUE INDEX `players_player` ON `players` (`player`)");
+            }
+            createIndex(con, stmt, "island", "island_world_islandId", "CREATE INDEX `island_world_islandId` ON `island` (`world`, `islandId`)");
+            createIndex(con, stmt, "island", "island_owner_id", "CREATE INDEX `island_owner_id` ON `island` (`owner`, `id`)");
+            createIndex(con, stmt, "island", "island_isSpawn", "CREATE INDEX `island_isSpawn` ON `island` (`isSpawn`)");
+        }
+    }
+
+    /**
+     * MySQL has no row id to tell identical rows apart, so every player
+     * that is listed more than once is rewritten with its first row.
+     */
+    private void removeDuplicatePlayers(Connection con) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet set = stmt.executeQuery("SELECT `player` FROM `players` GROUP BY `player` HAVING COUNT(*) > 1")) {
+            while (set.next()) {
+                names.add(set.getString(1));
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement select = con.prepareStatement("SELECT * FROM `players` WHERE `player` = ?");
+             PreparedStatement delete = con.prepareStatement("DELETE FROM `players` WHERE `player` = ?")) {
+            for (String name : names) {
+                select.setString(1, name);
+                List<String> columns = new ArrayList<>();
+                List<Object> row = new ArrayList<>();
+                try (ResultSet set = select.executeQuery()) {
+                    if (!set.next()) {
+                        continue;
+                    }
+                    for (int i = 1; i <= set.getMetaData().getColumnCount(); i++) {
+                        columns.add("`" + set.getMetaData().getColumnName(i) + "`");
+                        row.add(set.getObject(i));
+                    }
                 }
-                try {
-                    ipd.islandId = set.getInt("islandId");
-                } catch (SQLException ex) {
-                    ipd.islandId = plugin.getIsland().generateIslandKey(set.getInt("x"), set.getInt("z"));
+                delete.setString(1, name);
+                delete.executeUpdate();
+                String params = String.join(", ", Collections.nCopies(columns.size(), "?"));
+                try (PreparedStatement insert = con.prepareStatement("INSERT INTO `players` (" + String.join(", ", columns) + ") VALUES (" + params + ")")) {
+                    for (int i = 0; i < row.size(); i++) {
+                        insert.setObject(i + 1, row.get(i));
+                    }
+                    insert.executeUpdate();
                 }
-                try {
-                    ipd.protectionRange = set.getInt("psize");
-                } catch (SQLException ex) {
-                    ipd.protectionRange = Settings.protectionrange;
+            }
+        }
+        Utils.send("&e" + names.size() + " players were listed more than once, only their first row was kept");
+    }
+
+    /**
+     * Version 4: Challenge progress gets one row per player and challenge,
+     * the old serialized columns are copied over and emptied.
+     */
+    private void createChallenges(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS `challenges` (`player` VARCHAR(64) NOT NULL,"
+                + "`challenge` VARCHAR(64) NOT NULL,"
+                + "`completed` BOOLEAN NOT NULL,"
+                + "`times` INTEGER NOT NULL,"
+                + "PRIMARY KEY (`player`, `challenge`))");
+        }
+        try (Statement stmt = con.createStatement();
+             ResultSet set = stmt.executeQuery("SELECT `player`, `challengelist`, `challengelisttimes` FROM `players`");
+             PreparedStatement insert = con.prepareStatement("INSERT INTO `challenges` (`player`, `challenge`, `completed`, `times`) VALUES (?, ?, ?, ?)")) {
+            int rows = 0;
+            while (set.next()) {
+                HashMap<String, String> list = parseChallenges(set.getString(2));
+                HashMap<String, String> times = parseChallenges(set.getString(3));
+                Set<String> names = new HashSet<>(list.keySet());
+                names.addAll(times.keySet());
+                for (String challenge : names) {
+                    insert.setString(1, set.getString(1));
+                    insert.setString(2, challenge);
+                    insert.setBoolean(3, Boolean.parseBoolean(list.get(challenge)));
+                    int count;
+                    try {
+                        count = Integer.parseInt(times.getOrDefault(challenge, "0"));
+                    } catch (NumberFormatException ex) {
+                        count = 0;
+                    }
+                    insert.setInt(4, count);
+                    insert.addBatch();
+                    if (++rows % 500 == 0) {
+                        insert.executeBatch();
+                    }
                 }
-                try {
-                    ipd.name = set.getString("name");
-                } catch (SQLException ex) {
-                    ipd.name = "My Island";
+            }
+            insert.executeBatch();
+        }
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("UPDATE `players` SET `challengelist` = NULL, `challengelisttimes` = NULL");
+        }
+    }
+
+    /**
+     * Version 5: A grid cell can only be claimed once. The extra islands of
+     * cells that were claimed more than once are moved to `island_conflicts`
+     * so an admin can sort them out.
+     */
+    private void uniqueIslandCells(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS `island_conflicts` AS SELECT * FROM `island` WHERE 1 = 0");
+        }
+        moveDuplicateCells(con);
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(mySQL ? "DROP INDEX `island_world_islandId` ON `island`" : "DROP INDEX `island_world_islandId`");
+            stmt.executeUpdate("CREATE UNIQUE INDEX `island_cell` ON `island` (`world`, `islandId`)");
+        }
+    }
+
+    /**
+     * Version 6: The island key was x / distance + z / distance * Integer.MAX_VALUE
+     * in int arithmetic, which overflows and collides. It is now the grid
+     * cell packed into a long, the same way IslandManager.cellKey() does,
+     * with the grid size of the island's world.
+     */
+    private void longIslandKeys(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(mySQL ? "DROP INDEX `island_cell` ON `island`" : "DROP INDEX `island_cell`");
+            if (mySQL) {
+                stmt.executeUpdate("ALTER TABLE `island` MODIFY `islandId` BIGINT NOT NULL");
+                stmt.executeUpdate("ALTER TABLE `island_conflicts` MODIFY `islandId` BIGINT NOT NULL");
+            }
+        }
+        cellKeys(con, "island");
+        // The conflicts keep their key so an admin can compare them with the island that won
+        cellKeys(con, "island_conflicts");
+        // Islands whose old keys collided could share a cell, and two
+        // centers in the same cell now share a key
+        moveDuplicateCells(con);
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE UNIQUE INDEX `island_cell` ON `island` (`world`, `islandId`)");
+        }
+    }
+
+    /**
+     * Version 7: The protection flags were a "true, false, ..." string.
+     * They are now one BIGINT with a bit per flag, the strings are
+     * converted once and the old column is dropped.
+     */
+    private void islandFlags(Connection con) throws SQLException {
+        for (String table : new String[]{"island", "island_conflicts"}) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE `" + table + "` ADD COLUMN `flags` BIGINT NOT NULL DEFAULT 0");
+            }
+            // Most islands never change their settings, so there are only a
+            // few distinct strings to convert
+            List<Object[]> values = new ArrayList<>();
+            try (Statement stmt = con.createStatement();
+                 ResultSet set = stmt.executeQuery("SELECT DISTINCT `protection`, `isSpawn` FROM `" + table + "`")) {
+                while (set.next()) {
+                    values.add(new Object[]{set.getString(1), set.getBoolean(2)});
                 }
-                try {
-                    ipd.biome = set.getString("biome");
-                } catch (SQLException ex) {
-                    ipd.biome = Settings.defaultBiome.getName();
+            }
+            try (PreparedStatement stmt = con.prepareStatement("UPDATE `" + table + "` SET `flags` = ? WHERE `protection` = ? AND `isSpawn` = ?");
+                 PreparedStatement nulls = con.prepareStatement("UPDATE `" + table + "` SET `flags` = ? WHERE `protection` IS NULL AND `isSpawn` = ?")) {
+                for (Object[] value : values) {
+                    long flags = IslandData.parseLegacyFlags((String) value[0], (Boolean) value[1]);
+                    if (value[0] == null) {
+                        nulls.setLong(1, flags);
+                        nulls.setBoolean(2, (Boolean) value[1]);
+                        nulls.executeUpdate();
+                        continue;
+                    }
+                    stmt.setLong(1, flags);
+                    stmt.setString(2, (String) value[0]);
+                    stmt.setBoolean(3, (Boolean) value[1]);
+                    stmt.addBatch();
                 }
-                try {
-                    ipd.locked = set.getBoolean("locked");
-                } catch (SQLException ex) {
-                    ipd.locked = false;
+                stmt.executeBatch();
+            }
+        }
+        if (mySQL) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE `island` DROP COLUMN `protection`");
+                stmt.executeUpdate("ALTER TABLE `island_conflicts` DROP COLUMN `protection`");
+            }
+            return;
+        }
+        // SQLite can not drop a column, the table is copied without it. The
+        // conflicts table was created without constraints so it can keep
+        // the column.
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE `island_new` (`id` INTEGER,"
+                + "`islandId` INTEGER NOT NULL,"
+                + "`x` INTEGER NOT NULL,"
+                + "`y` INTEGER NOT NULL,"
+                + "`z` INTEGER NOT NULL,"
+                + "`spawnX` INTEGER,"
+                + "`spawnY` INTEGER,"
+                + "`spawnZ` INTEGER,"
+                + "`isSpawn` BOOLEAN NOT NULL,"
+                + "`psize` INTEGER NOT NULL,"
+                + "`owner` VARCHAR(64) NOT NULL,"
+                + "`name` VARCHAR(128) NOT NULL,"
+                + "`world` VARCHAR(64) NOT NULL,"
+                + "`flags` BIGINT NOT NULL,"
+                + "`biome` VARCHAR(64) NOT NULL,"
+                + "`locked` INTEGER NOT NULL)");
+            String columns = "`id`, `islandId`, `x`, `y`, `z`, `spawnX`, `spawnY`, `spawnZ`, `isSpawn`, `psize`, `owner`, `name`, `world`, `flags`, `biome`, `locked`";
+            stmt.executeUpdate("INSERT INTO `island_new` (" + columns + ") SELECT " + columns + " FROM `island`");
+            stmt.executeUpdate("DROP TABLE `island`");
+            stmt.executeUpdate("ALTER TABLE `island_new` RENAME TO `island`");
+            stmt.executeUpdate("CREATE UNIQUE INDEX `island_cell` ON `island` (`world`, `islandId`)");
+            stmt.executeUpdate("CREATE INDEX `island_owner_id` ON `island` (`owner`, `id`)");
+            stmt.executeUpdate("CREATE INDEX `island_isSpawn` ON `island` (`isSpawn`)");
+        }
+    }
+
+    /**
+     * Version 8: Worlds have their own grid size, but version 6 could have
+     * keyed the islands with the global island distance. The keys are
+     * worked out again with the grid of each island's world, which can
+     * put two islands in the same cell.
+     */
+    private void worldIslandKeys(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(mySQL ? "DROP INDEX `island_cell` ON `island`" : "DROP INDEX `island_cell`");
+        }
+        cellKeys(con, "island");
+        cellKeys(con, "island_conflicts");
+        moveDuplicateCells(con);
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE UNIQUE INDEX `island_cell` ON `island` (`world`, `islandId`)");
+        }
+    }
+
+    /**
+     * Sets the key of every row of this island table to its grid cell
+     */
+    private void cellKeys(Connection con, String table) throws SQLException {
+        List<Object[]> positions = new ArrayList<>();
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery("SELECT DISTINCT `world`, `x`, `z` FROM `" + table + "`")) {
+            while (set.next()) {
+                positions.add(new Object[]{set.getString(1), set.getInt(2), set.getInt(3)});
+            }
+        }
+        try (PreparedStatement stmt = con.prepareStatement("UPDATE `" + table + "` SET `islandId` = ? WHERE `world` = ? AND `x` = ? AND `z` = ?")) {
+            int rows = 0;
+            for (Object[] pos : positions) {
+                int x = (Integer) pos[1];
+                int z = (Integer) pos[2];
+                stmt.setLong(1, IslandManager.cellKey(x, z, plotSizes.applyAsInt((String) pos[0])));
+                stmt.setString(2, (String) pos[0]);
+                stmt.setInt(3, x);
+                stmt.setInt(4, z);
+                stmt.addBatch();
+                if (++rows % 500 == 0) {
+                    stmt.executeBatch();
                 }
-                try {
-                    ipd.reloadSettings(set.getString("protection"));
-                } catch (SQLException ex) {
-                    ipd.setIgsDefaults();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Cells that were claimed more than once keep the island of the first
+     * owner (by name and home number), the other rows are moved to
+     * `island_conflicts`. Unowned rows never win over an owned one.
+     */
+    private void moveDuplicateCells(Connection con) throws SQLException {
+        List<Object[]> cells = new ArrayList<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet set = stmt.executeQuery("SELECT `world`, `islandId` FROM `island` GROUP BY `world`, `islandId` HAVING COUNT(*) > 1")) {
+            while (set.next()) {
+                cells.add(new Object[]{set.getString(1), set.getLong(2)});
+            }
+        }
+        try (PreparedStatement select = con.prepareStatement("SELECT * FROM `island` WHERE `world` = ? AND `islandId` = ? ORDER BY `owner` IS NULL, `owner`, `id`");
+             PreparedStatement delete = con.prepareStatement("DELETE FROM `island` WHERE `world` = ? AND `islandId` = ?")) {
+            for (Object[] cell : cells) {
+                select.setString(1, (String) cell[0]);
+                select.setLong(2, (Long) cell[1]);
+                // Every column the table has at this version, the row mapper only knows the newest
+                List<String> columns = new ArrayList<>();
+                List<Object[]> rows = new ArrayList<>();
+                try (ResultSet set = select.executeQuery()) {
+                    int count = set.getMetaData().getColumnCount();
+                    for (int i = 1; i <= count; i++) {
+                        columns.add("`" + set.getMetaData().getColumnName(i) + "`");
+                    }
+                    while (set.next()) {
+                        Object[] row = new Object[count];
+                        for (int i = 0; i < count; i++) {
+                            row[i] = set.getObject(i + 1);
+                        }
+                        rows.add(row);
+                    }
                 }
-                pd.add(ipd);
-            }
-        } catch (SQLException ex) {
-        }
-    }
-
-    @SuppressWarnings("unused")
-    private class IndependantIsland {
-
-        private final HashMap<IslandData.SettingsFlag, Boolean> igs = new HashMap<>();
-        // This is how new island data is.
-        public int islandId;
-        public int id;
-        public String levelName;
-        // Coordinates of the island area
-        // This should have before 1.0.3 commit
-        public int X = 0;
-        public int Y = 0;
-        public int Z = 0;
-        public String name;
-        public String owner;
-        public String biome;
-        public boolean locked;
-        // Set if this island is a spawn island
-        private boolean isSpawn = false;
-        // Protection size
-        private int protectionRange = 0; //Unaccessable
-
-        public IndependantIsland() {
-            prepareStatement();
-        }
-
-        /**
-         * Prepare the variables
-         */
-        private void prepareStatement() {
-
-        }
-
-        private void reloadSettings(String string) {
-            if (isSpawn) {
-                setSpawnDefaults();
-            } else {
-                setIgsDefaults();
-            }
-            boolean value;
-            ArrayList<String> bool = Utils.stringToArray(string, ", ");
-            for (int i = 0; i < IslandData.SettingsFlag.values().length; i++) {
-                String pool = bool.get(i);
-                value = Boolean.parseBoolean(pool);
-                IslandData.SettingsFlag[] set = IslandData.SettingsFlag.values();
-                igs.put(set[i], value);
-            }
-
-        }
-
-        /**
-         * Resets the protection settings to their default as set in config.yml
-         * for this island
-         */
-        public void setIgsDefaults() {
-            for (IslandData.SettingsFlag flag : IslandData.SettingsFlag.values()) {
-                if (!Settings.defaultIslandSettings.containsKey(flag)) {
-                    // Default default
-                    this.igs.put(flag, false);
-                } else {
-                    if (Settings.defaultIslandSettings.get(flag) == null) {
-                        this.igs.put(flag, false);
-                    } else {
-                        this.igs.put(flag, Settings.defaultIslandSettings.get(flag));
+                // Rows can be identical, so the whole cell is rewritten
+                delete.setString(1, (String) cell[0]);
+                delete.setLong(2, (Long) cell[1]);
+                delete.executeUpdate();
+                String names = String.join(", ", columns);
+                String params = String.join(", ", Collections.nCopies(columns.size(), "?"));
+                try (PreparedStatement keep = con.prepareStatement("INSERT INTO `island` (" + names + ") VALUES (" + params + ")");
+                     PreparedStatement move = con.prepareStatement("INSERT INTO `island_conflicts` (" + names + ") VALUES (" + params + ")")) {
+                    for (int r = 0; r < rows.size(); r++) {
+                        PreparedStatement insert = r == 0 ? keep : move;
+                        Object[] row = rows.get(r);
+                        for (int i = 0; i < row.length; i++) {
+                            insert.setObject(i + 1, row[i]);
+                        }
+                        insert.executeUpdate();
                     }
                 }
+                Utils.send("&cThe island cell " + cell[1] + " in " + cell[0] + " was claimed " + rows.size() + " times, the extra islands were moved to island_conflicts");
             }
         }
+    }
 
-        /**
-         * Reset spawn protection settings to their default as set in config.yml
-         * for this island
-         */
-        public void setSpawnDefaults() {
-            for (IslandData.SettingsFlag flag : IslandData.SettingsFlag.values()) {
-                if (!Settings.defaultSpawnSettings.containsKey(flag)) {
-                    // Default default
-                    this.igs.put(flag, false);
-                } else {
-                    if (Settings.defaultSpawnSettings.get(flag) == null) {
-                        this.igs.put(flag, false);
-                    } else {
-                        this.igs.put(flag, Settings.defaultSpawnSettings.get(flag));
-                    }
+    /**
+     * Reads the old "name:value, name:value" format
+     */
+    private static HashMap<String, String> parseChallenges(String value) {
+        HashMap<String, String> result = new HashMap<>();
+        if (value == null || value.isEmpty()) {
+            return result;
+        }
+        for (String entry : value.split(", ")) {
+            int split = entry.lastIndexOf(':');
+            if (split > 0) {
+                result.put(entry.substring(0, split).toLowerCase(), entry.substring(split + 1));
+            }
+        }
+        return result;
+    }
+
+    private boolean addColumn(Statement stmt, Set<String> columns, String column, String definition) throws SQLException {
+        if (columns.contains(column.toLowerCase())) {
+            return false;
+        }
+        stmt.executeUpdate("ALTER TABLE `island` ADD COLUMN `" + column + "` " + definition);
+        return true;
+    }
+
+    private static void createIndex(Connection con, Statement stmt, String table, String index, String sql) throws SQLException {
+        if (!hasIndex(con, table, index)) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private static boolean hasIndex(Connection con, String table, String index) throws SQLException {
+        try (ResultSet set = con.getMetaData().getIndexInfo(con.getCatalog(), null, table, false, false)) {
+            while (set.next()) {
+                if (index.equalsIgnoreCase(set.getString("INDEX_NAME"))) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    @FunctionalInterface
+    private interface Step {
+
+        void run(Connection con) throws SQLException;
+    }
+
+    private static final class Migration {
+
+        private final int version;
+        private final String description;
+        private final Step step;
+
+        private Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
     }
 }
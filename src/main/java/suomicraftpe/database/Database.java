@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import cn.nukkit.level.Position;
+import suomicraftpe.player.PlayerData;
+import suomicraftpe.storage.IslandData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Everything the plugin stores. {@link ASConnection} keeps it in a SQL
+ * database, {@link LogDatabase} in an append-only file.
+ *
+ * @author Adam Matthew
+ */
+public interface Database {
+
+    // ------------ ISLANDS ------------
+
+    boolean setSpawnPosition(Position pos);
+
+    /**
+     * Get the island at this location
+     *
+     * @return The island, null if the cell is unclaimed
+     */
+    IslandData getIslandLocation(String levelName, int X, int Z);
+
+    /**
+     * Get the island that claimed the grid cell of this location
+     *
+     * @return The island, null if the cell is unclaimed
+     */
+    IslandData getIslandAt(String levelName, int X, int Z);
+
+    /**
+     * Get the island that claimed a grid cell
+     *
+     * @param islandId The island key of the cell
+     * @return The island, null if the cell is unclaimed
+     */
+    IslandData getIslandInCell(String levelName, long islandId);
+
+    ArrayList<IslandData> getIslands(String owner);
+
+    ArrayList<IslandData> getIslands(String owner, String levelName);
+
+    IslandData getIsland(String name, int homes);
+
+    IslandData getSpawn();
+
+    /**
+     * Reserves a free grid cell, no other island can be created there until
+     * the island is created with {@link #createIsland(IslandData)} or the
+     * reservation is released.
+     *
+     * @return false if the cell is claimed or reserved already
+     */
+    boolean reserveCell(String levelName, long islandId);
+
+    void releaseCell(String levelName, long islandId);
+
+    /**
+     * Writes a new island and registers it once the row exists. Waits for
+     * the write, the server thread goes through {@link #async()}.
+     *
+     * @param pd The island, its cell reserved by the caller
+     * @return false if the row was not written, the caller releases the cell
+     */
+    boolean createIsland(IslandData pd);
+
+    boolean saveIsland(IslandData pd);
+
+    boolean deleteIsland(IslandData pd);
+
+    // ------------ WORLDS ------------
+
+    ArrayList<String> getWorlds();
+
+    /**
+     * Adds the worlds that are not stored yet. The write may finish after
+     * this returns, it is flushed before the database closes.
+     *
+     * @param pd The world names
+     * @return false if the write could not be queued
+     */
+    boolean saveWorlds(ArrayList<String> pd);
+
+    // ------------ PLAYERS ------------
+
+    List<String> getPlayersData();
+
+    /**
+     * Get the team members of every player that has any, used to build
+     * the member index
+     *
+     * @return owner -> members
+     */
+    HashMap<String, ArrayList<String>> getTeams();
+
+    PlayerData getPlayerData(String st);
+
+    /**
+     * Writes a new player. Waits for the write, the server thread goes
+     * through {@link #async()}.
+     *
+     * @param p The player name
+     * @return false if the row was not written
+     */
+    boolean createPlayer(String p);
+
+    /**
+     * Writes the player right away. Waits for the write, the server thread
+     * uses {@link #queuePlayerData(PlayerData)} or {@link #async()}.
+     *
+     * @param pd The player
+     * @return false if the row was not written
+     */
+    boolean savePlayerData(PlayerData pd);
+
+    /**
+     * Saves the player when the current save window closes, changes to the
+     * same player in the meantime are written together.
+     *
+     * @param pd The player
+     */
+    void queuePlayerData(PlayerData pd);
+
+    /**
+     * Writes the queued changes of this player without waiting for the
+     * save window. Backends that write every save right away, like
+     * {@link LogDatabase}, have nothing to do here.
+     *
+     * @param player The player name
+     */
+    void flushPlayerData(String player);
+
+    /**
+     * Loads the player off the main thread, creating it when it joins for
+     * the first time. Until the session is closed every read of this player
+     * returns the loaded object. Opening a session that is open or still
+     * loading returns that session instead of loading it again.
+     *
+     * @param player The player name
+     * @return Completes with the player once it is loaded
+     */
+    CompletableFuture<PlayerData> openSession(String player);
+
+    /**
+     * Writes the pending changes of this player and forgets the session.
+     * {@link LogDatabase} keeps every player in memory and has nothing
+     * pending, closing a session does nothing there.
+     *
+     * @param player The player name
+     */
+    void closeSession(String player);
+
+    /**
+     * Asynchronous view of this database, see {@link AsyncDatabase}
+     *
+     * @return AsyncDatabase
+     */
+    AsyncDatabase async();
+
+    /**
+     * Call counts and latencies of the storage operations
+     */
+    QueryStats getStats();
+
+    /**
+     * Writes everything that is pending and releases the storage
+     */
+    void close();
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.database.variables.AbstractDatabase;
+import suomicraftpe.database.variables.MySQLDatabase;
+import suomicraftpe.utils.Settings;
+import suomicraftpe.utils.Utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * Copies every table from one SQL backend to another, used to move from
+ * SQLite to MySQL (or back).
+ * <p>
+ * Rows are read with a cursor in key order and inserted in batches, each
+ * batch is committed together with the last key it copied and how many
+ * copied rows have that key. An interrupted migration reads again from
+ * that key and skips those rows, so rows sharing a key are never lost at
+ * a batch boundary. Nothing is ever held in memory except the batch
+ * being written.
+ * <p>
+ * Rows that change on the source after they were copied are not copied
+ * again, so the migration should run while the server is quiet.
+ *
+ * @author Adam Matthew
+ */
+public final class DatabaseMigrator implements Runnable {
+
+    // Tables in the order they are copied, the key columns decide the order
+    private static final Table[] TABLES = {
+        new Table("worlds", "`world`", "world", null, false, false),
+        new Table("island", RowMapper.ISLAND_COLUMNS, "world", "islandId", true, true),
+        new Table("players", RowMapper.PLAYER_COLUMNS + ", `name`", "player", null, false, true),
+        new Table("challenges", "`player`, `challenge`, `completed`, `times`", "player", "challenge", false, true),
+    };
+    // Progress is reported at most this often
+    private static final long REPORT_INTERVAL = 5000;
+
+    private final AbstractDatabase source;
+    private final AbstractDatabase target;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public DatabaseMigrator(AbstractDatabase source, AbstractDatabase target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Starts copying on its own thread
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("The migration has already been started");
+        }
+        thread = new Thread(this, "ASkyBlock-Migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops after the current batch, the next run continues from there.
+     * The migration counts as running until that batch is committed.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * @return true while the migration thread is alive, also after
+     * {@link #stop()} until it has finished its batch
+     */
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        try (Connection from = source.createReadConnection(); Connection to = target.createConnection()) {
+            // Both sides have to be on the same schema before rows can be copied,
+            // the source is the database the server runs on so it is up to date
+            ConnectionUpdater updater = new ConnectionUpdater(to, target instanceof MySQLDatabase);
+            updater.update();
+            int version = new ConnectionUpdater(from, source instanceof MySQLDatabase).getVersion();
+            if (version != updater.getVersion()) {
+                throw new SQLException("The source database is at schema version " + version + ", the target at " + updater.getVersion());
+            }
+            try (Statement stmt = to.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS `migration_state` (`tbl` VARCHAR(32) NOT NULL PRIMARY KEY,"
+                    + "`key1` VARCHAR(255),"
+                    + "`key2` VARCHAR(255),"
+                    + "`copied` BIGINT NOT NULL,"
+                    + "`done` BOOLEAN NOT NULL)");
+            }
+            addTiedColumn(to);
+            long start = System.currentTimeMillis();
+            long total = 0;
+            for (Table table : TABLES) {
+                if (!running) {
+                    Utils.send("&eDatabase migration stopped, run it again to continue");
+                    return;
+                }
+                total += copy(table, from, to);
+            }
+            if (running) {
+                long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+                Utils.send("&aDatabase migration finished, " + total + " rows copied in " + seconds + "s. "
+                    + "Change database.connection in config.yml and restart the server to use the new database.");
+            } else {
+                Utils.send("&eDatabase migration stopped, run it again to continue");
+            }
+        } catch (SQLException | ClassNotFoundException ex) {
+            Utils.send("&cDatabase migration failed, run it again to continue: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Copies one table starting after the last committed key
+     *
+     * @return Rows copied in this run
+     */
+    private long copy(Table table, Connection from, Connection to) throws SQLException {
+        String key1 = null;
+        String key2 = null;
+        // Copied rows that have the last key
+        long tied = 0;
+        long copied = 0;
+        boolean resumed = false;
+        try (PreparedStatement stmt = to.prepareStatement("SELECT `key1`, `key2`, `copied`, `done`, `tied` FROM `migration_state` WHERE `tbl` = ?")) {
+            stmt.setString(1, table.name);
+            try (ResultSet set = stmt.executeQuery()) {
+                if (set.next()) {
+                    if (set.getBoolean(4)) {
+                        Utils.send("&e" + table.name + " was already migrated (" + set.getLong(3) + " rows)");
+                        return 0;
+                    }
+                    key1 = set.getString(1);
+                    key2 = set.getString(2);
+                    copied = set.getLong(3);
+                    tied = set.getLong(5);
+                    resumed = true;
+                }
+            }
+        }
+        if (!resumed) {
+            try (Statement stmt = to.createStatement(); ResultSet set = stmt.executeQuery("SELECT COUNT(*) FROM `" + table.name + "`")) {
+                if (set.next() && set.getLong(1) > 0) {
+                    throw new SQLException("The table " + table.name + " in the target database is not empty");
+                }
+            }
+            Utils.send("&eMigrating " + table.name);
+        } else {
+            Utils.send("&eContinuing the migration of " + table.name + " after " + copied + " rows");
+        }
+
+        int columns = table.columns.split(",").length;
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < columns; i++) {
+            params.append(i == 0 ? "?" : ", ?");
+        }
+        String insert = "INSERT INTO `" + table.name + "` (" + table.columns + ") VALUES (" + params + ")";
+
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        long copiedNow = 0;
+        int batchSize = Math.max(1, Settings.migrationBatchSize);
+        boolean autoCommit = to.getAutoCommit();
+        to.setAutoCommit(false);
+        try (PreparedStatement select = from.prepareStatement(table.select(key1 != null));
+             PreparedStatement write = to.prepareStatement(insert)) {
+            select.setFetchSize(Settings.databaseFetchSize);
+            if (key1 != null) {
+                table.bindKey(select, key1, key2);
+            }
+            int pending = 0;
+            // The rows of the last key that are already in the target come first
+            long skip = tied;
+            try (ResultSet set = select.executeQuery()) {
+                while (set.next()) {
+                    String value1 = set.getString(table.key1Index(columns));
+                    String value2 = table.key2 != null ? set.getString(table.key2Index(columns)) : null;
+                    boolean same = key1 != null && key1.equals(value1) && Objects.equals(key2, value2);
+                    if (same && skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    skip = 0;
+                    for (int i = 1; i <= columns; i++) {
+                        write.setObject(i, set.getObject(i));
+                    }
+                    write.addBatch();
+                    tied = same ? tied + 1 : 1;
+                    key1 = value1;
+                    key2 = value2;
+                    if (++pending >= batchSize) {
+                        copied += pending;
+                        copiedNow += pending;
+                        pending = 0;
+                        write.executeBatch();
+                        saveState(to, table, key1, key2, tied, copied, false);
+                        to.commit();
+                        long now = System.currentTimeMillis();
+                        if (now - lastReport >= REPORT_INTERVAL) {
+                            lastReport = now;
+                            Utils.send("&e" + table.name + ": " + copied + " rows (" + rate(copiedNow, now - start) + " rows/s)");
+                        }
+                        if (!running) {
+                            return copiedNow;
+                        }
+                    }
+                }
+            }
+            copied += pending;
+            copiedNow += pending;
+            write.executeBatch();
+            saveState(to, table, key1, key2, tied, copied, true);
+            to.commit();
+        } catch (SQLException ex) {
+            to.rollback();
+            throw new SQLException("Failed to migrate " + table.name + ": " + ex.getMessage(), ex);
+        } finally {
+            to.setAutoCommit(autoCommit);
+        }
+        Utils.send("&a" + table.name + ": " + copied + " rows (" + rate(copiedNow, System.currentTimeMillis() - start) + " rows/s)");
+        return copiedNow;
+    }
+
+    private void saveState(Connection to, Table table, String key1, String key2, long tied, long copied, boolean done) throws SQLException {
+        try (PreparedStatement stmt = to.prepareStatement("UPDATE `migration_state` SET `key1` = ?, `key2` = ?, `tied` = ?, `copied` = ?, `done` = ? WHERE `tbl` = ?")) {
+            stmt.setString(1, key1);
+            stmt.setString(2, key2);
+            stmt.setLong(3, tied);
+            stmt.setLong(4, copied);
+            stmt.setBoolean(5, done);
+            stmt.setString(6, table.name);
+            if (stmt.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement stmt = to.prepareStatement("INSERT INTO `migration_state` (`tbl`, `key1`, `key2`, `tied`, `copied`, `done`) VALUES (?, ?, ?, ?, ?, ?)")) {
+            stmt.setString(1, table.name);
+            stmt.setString(2, key1);
+            stmt.setString(3, key2);
+            stmt.setLong(4, tied);
+            stmt.setLong(5, copied);
+            stmt.setBoolean(6, done);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * State tables of migrations from before `tied` existed get the column
+     */
+    private static void addTiedColumn(Connection to) throws SQLException {
+        try (ResultSet set = to.getMetaData().getColumns(to.getCatalog(), null, "migration_state", null)) {
+            while (set.next()) {
+                if (set.getString("COLUMN_NAME").equalsIgnoreCase("tied")) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = to.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE `migration_state` ADD COLUMN `tied` BIGINT NOT NULL DEFAULT 0");
+        }
+    }
+
+    private static long rate(long rows, long millis) {
+        return rows * 1000 / Math.max(1, millis);
+    }
+
+    /**
+     * A table and the key it is copied in order of. The key columns are
+     * selected after the copied columns. If the key is not unique, the
+     * rows that share it are ordered by every column so a resumed run
+     * sees them in the same order, rows that are equal in every column
+     * can be skipped in any order.
+     */
+    private static final class Table {
+
+        private final String name;
+        private final String columns;
+        private final String key1;
+        private final String key2;
+        private final boolean key2Numeric;
+        private final boolean unique;
+
+        private Table(String name, String columns, String key1, String key2, boolean key2Numeric, boolean unique) {
+            this.name = name;
+            this.columns = columns;
+            this.key1 = key1;
+            this.key2 = key2;
+            this.key2Numeric = key2Numeric;
+            this.unique = unique;
+        }
+
+        private String select(boolean after) {
+            StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(", `").append(key1).append('`');
+            if (key2 != null) {
+                sql.append(", `").append(key2).append('`');
+            }
+            sql.append(" FROM `").append(name).append('`');
+            if (after) {
+                // The last key again, its rows that were copied are skipped
+                if (key2 == null) {
+                    sql.append(" WHERE `").append(key1).append("` >= ?");
+                } else {
+                    sql.append(" WHERE `").append(key1).append("` > ? OR (`").append(key1).append("` = ? AND `").append(key2).append("` >= ?)");
+                }
+            }
+            sql.append(" ORDER BY `").append(key1).append('`');
+            if (key2 != null) {
+                sql.append(", `").append(key2).append('`');
+            }
+            if (!unique) {
+                sql.append(", ").append(columns);
+            }
+            return sql.toString();
+        }
+
+        private void bindKey(PreparedStatement stmt, String value1, String value2) throws SQLException {
+            stmt.setString(1, value1);
+            if (key2 != null) {
+                stmt.setString(2, value1);
+                if (key2Numeric) {
+                    stmt.setLong(3, Long.parseLong(value2));
+                } else {
+                    stmt.setString(3, value2);
+                }
+            }
+        }
+
+        private int key1Index(int columns) {
+            return columns + 1;
+        }
+
+        private int key2Index(int columns) {
+            return columns + 2;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.storage.IslandData;
+import suomicraftpe.utils.LongHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Authoritative in-memory copy of the island table. Every island is
+ * loaded once at startup and all reads are served from here, the
+ * database only receives the writes.
+ * <p>
+ * Safe to read from any thread. The grid is split into shards by island
+ * key, each with its own read/write lock, so readers never wait for each
+ * other and a write only blocks the readers of its own shard. The owner
+ * index is copy-on-write and read without any lock.
+ *
+ * @author Adam Matthew
+ */
+public final class IslandRegistry {
+
+    private final Shard[] shards;
+    private final int shift;
+    // owner -> home number -> island, the maps are replaced and never changed
+    private final ConcurrentHashMap<String, TreeMap<Integer, IslandData>> byOwner = new ConcurrentHashMap<>();
+    private final AtomicReference<IslandData> spawn = new AtomicReference<>();
+    // island -> the values it is indexed under, IslandData.equals() is not an identity check
+    private final Map<IslandData, Indexed> indexed = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public IslandRegistry() {
+        // A few shards per core keeps two writers from meeting often
+        int count = Integer.highestOneBit(Math.max(4, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+        count = Math.min(count, 256);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        this.shift = 64 - Integer.numberOfTrailingZeros(count);
+    }
+
+    private Shard shard(long islandId) {
+        // Neighbouring cells differ in the low bits of either half, mix them all
+        return shards[(int) ((islandId * 0x9E3779B97F4A7C15L) >>> shift)];
+    }
+
+    /**
+     * Adds or re-indexes an island. If the owner, home number, world or
+     * key changed since it was last added, the old entries are dropped.
+     *
+     * @param pd The island
+     */
+    public void add(IslandData pd) {
+        Indexed now = new Indexed(pd);
+        Indexed before = indexed.put(pd, now);
+        if (before != null && !before.equals(now)) {
+            unindex(pd, before);
+        }
+        Shard shard = shard(now.islandId);
+        Lock lock = shard.lock.writeLock();
+        lock.lock();
+        try {
+            shard.release(now.levelName, now.islandId);
+            shard.byWorld.computeIfAbsent(now.levelName, k -> new LongHashMap<>()).put(now.islandId, pd);
+        } finally {
+            lock.unlock();
+        }
+        if (now.owner != null) {
+            byOwner.compute(now.owner, (k, homes) -> {
+                TreeMap<Integer, IslandData> copy = homes == null ? new TreeMap<>() : new TreeMap<>(homes);
+                copy.put(now.id, pd);
+                return copy;
+            });
+        }
+        if (pd.isSpawn()) {
+            spawn.set(pd);
+        } else {
+            spawn.compareAndSet(pd, null);
+        }
+    }
+
+    /**
+     * Removes an island from every index
+     *
+     * @param pd The island
+     * @return the island that was removed, null if it was never registered
+     */
+    public IslandData remove(IslandData pd) {
+        // The registered instance may have been changed since it was indexed
+        IslandData removed = indexed.containsKey(pd) ? pd : null;
+        if (removed == null && pd.getId() >= 0 && pd.getOwner() != null) {
+            removed = getIsland(pd.getOwner(), pd.getId());
+        }
+        if (removed == null) {
+            removed = getAt(pd.getLevelName(), pd.getIslandId());
+        }
+        if (removed == null) {
+            return null;
+        }
+        Indexed at = indexed.remove(removed);
+        unindex(removed, at != null ? at : new Indexed(removed));
+        spawn.compareAndSet(removed, null);
+        return removed;
+    }
+
+    /**
+     * Drops the entries of an island that were made with these values,
+     * entries that point to another island are left alone
+     */
+    private void unindex(IslandData island, Indexed at) {
+        Shard shard = shard(at.islandId);
+        Lock lock = shard.lock.writeLock();
+        lock.lock();
+        try {
+            LongHashMap<IslandData> world = shard.byWorld.get(at.levelName);
+            if (world != null && world.get(at.islandId) == island) {
+                world.remove(at.islandId);
+                if (world.isEmpty()) {
+                    shard.byWorld.remove(at.levelName);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (at.owner != null) {
+            byOwner.computeIfPresent(at.owner, (k, homes) -> {
+                if (homes.get(at.id) != island) {
+                    return homes;
+                }
+                TreeMap<Integer, IslandData> copy = new TreeMap<>(homes);
+                copy.remove(at.id);
+                return copy.isEmpty() ? null : copy;
+            });
+        }
+    }
+
+    /**
+     * Claims a free grid cell for an island that is about to be created.
+     * The reservation ends when the island is added or it is released.
+     *
+     * @param levelName The world
+     * @param islandId  The cell
+     * @return true if the cell was free and is now reserved for the caller
+     */
+    public boolean reserve(String levelName, long islandId) {
+        // Everything about one key lives in the same shard, so the check
+        // and the reservation are atomic
+        Shard shard = shard(islandId);
+        Lock lock = shard.lock.writeLock();
+        lock.lock();
+        try {
+            // Keys are per world, the same cell may be claimed in every world
+            if (shard.getAt(levelName, islandId) != null) {
+                return false;
+            }
+            return shard.reserved.computeIfAbsent(levelName, k -> new HashSet<>()).add(islandId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives up a reservation, used when the island was not created after all
+     *
+     * @param levelName The world
+     * @param islandId  The cell
+     */
+    public void release(String levelName, long islandId) {
+        Shard shard = shard(islandId);
+        Lock lock = shard.lock.writeLock();
+        lock.lock();
+        try {
+            shard.release(levelName, islandId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public IslandData getAt(String levelName, long islandId) {
+        Shard shard = shard(islandId);
+        Lock lock = shard.lock.readLock();
+        lock.lock();
+        try {
+            return shard.getAt(levelName, islandId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public IslandData getIsland(String owner, int homes) {
+        TreeMap<Integer, IslandData> list = byOwner.get(owner);
+        return list == null ? null : list.get(homes);
+    }
+
+    public ArrayList<IslandData> getIslands(String owner) {
+        TreeMap<Integer, IslandData> list = byOwner.get(owner);
+        return list == null ? new ArrayList<>() : new ArrayList<>(list.values());
+    }
+
+    public ArrayList<IslandData> getIslands(String owner, String levelName) {
+        ArrayList<IslandData> pd = new ArrayList<>();
+        TreeMap<Integer, IslandData> list = byOwner.get(owner);
+        if (list != null) {
+            for (IslandData island : list.values()) {
+                if (levelName.equals(island.getLevelName())) {
+                    pd.add(island);
+                }
+            }
+        }
+        return pd;
+    }
+
+    public IslandData getSpawn() {
+        return spawn.get();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            Lock lock = shard.lock.readLock();
+            lock.lock();
+            try {
+                for (LongHashMap<IslandData> world : shard.byWorld.values()) {
+                    size += world.size();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Shard shard : shards) {
+            Lock lock = shard.lock.writeLock();
+            lock.lock();
+            try {
+                shard.byWorld.clear();
+                shard.reserved.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+        byOwner.clear();
+        indexed.clear();
+        spawn.set(null);
+    }
+
+    /**
+     * The values an island was indexed under the last time it was added
+     */
+    private static final class Indexed {
+
+        private final String levelName;
+        private final long islandId;
+        private final String owner;
+        private final int id;
+
+        private Indexed(IslandData pd) {
+            this.levelName = pd.getLevelName();
+            this.islandId = pd.getIslandId();
+            this.owner = pd.getOwner();
+            this.id = pd.getId();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Indexed)) {
+                return false;
+            }
+            Indexed other = (Indexed) obj;
+            return islandId == other.islandId && id == other.id
+                && Objects.equals(levelName, other.levelName) && Objects.equals(owner, other.owner);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(levelName, islandId, owner, id);
+        }
+    }
+
+    /**
+     * The islands of every key that hashes to this shard
+     */
+    private static final class Shard {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // world -> grid cell -> island
+        private final HashMap<String, LongHashMap<IslandData>> byWorld = new HashMap<>();
+        // world -> cells that are being claimed but are not registered yet
+        private final HashMap<String, HashSet<Long>> reserved = new HashMap<>();
+
+        private IslandData getAt(String levelName, long islandId) {
+            LongHashMap<IslandData> world = byWorld.get(levelName);
+            return world == null ? null : world.get(islandId);
+        }
+
+        private void release(String levelName, long islandId) {
+            HashSet<Long> cells = reserved.get(levelName);
+            if (cells != null && cells.remove(islandId) && cells.isEmpty()) {
+                reserved.remove(levelName);
+            }
+        }
+    }
+}
@@ -0,0 +1,741 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import cn.nukkit.level.Position;
+import suomicraftpe.ASkyBlock;
+import suomicraftpe.island.IslandManager;
+import suomicraftpe.player.PlayerData;
+import suomicraftpe.storage.IslandData;
+import suomicraftpe.utils.Settings;
+import suomicraftpe.utils.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Stores everything in memory and persists it to a single append-only
+ * log file, no SQL involved. Every change is one record appended to the
+ * memory-mapped file, startup replays the file front to back.
+ * <p>
+ * A record is its length, a CRC32 of the body and the body. A record
+ * that was only partly written when the server died fails its checksum
+ * and ends the replay. Records that were replaced by newer ones are
+ * dropped by the compaction thread, which rewrites the live records into
+ * a new file and swaps it in.
+ *
+ * @author Adam Matthew
+ */
+public final class LogDatabase implements Database {
+
+    private static final int MAGIC = 0x41534B4C;
+    // 2: island keys are longs
+    // 3: island protection flags are a bitmask
+    private static final int VERSION = 3;
+    private static final int FILE_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int INITIAL_SIZE = 1 << 20;
+    // Appends that compaction copies under the lock at most
+    private static final int COMPACT_TAIL = 1 << 16;
+
+    private static final byte ISLAND = 1;
+    private static final byte ISLAND_DELETE = 2;
+    private static final byte PLAYER = 3;
+    private static final byte WORLD = 4;
+
+    private final ASkyBlock plugin;
+    private final File file;
+    private final IslandRegistry islandCache = new IslandRegistry();
+    // Islands by their position, this is what the log records refer to
+    private final HashMap<String, IslandData> islands = new HashMap<>();
+    private final LinkedHashMap<String, PlayerData> players = new LinkedHashMap<>();
+    private final ArrayList<String> worlds = new ArrayList<>();
+    // The newest record of every island, player and world, encoded when it
+    // was appended. Compaction copies these bytes and never reads an
+    // object the server may be changing at the same time.
+    private final LinkedHashMap<String, byte[]> live = new LinkedHashMap<>();
+    private final ScheduledExecutorService compactor;
+    private final AsyncDatabase async;
+    private final QueryStats stats = new QueryStats();
+    // Held while the file is flushed or swapped, appends only take the
+    // monitor of this object and never wait for the disk
+    private final Object ioLock = new Object();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    // Format of the file that is being replayed
+    private int version = VERSION;
+    // Records in the file, live or not
+    private int records;
+
+    public LogDatabase(ASkyBlock plugin, File file) throws IOException {
+        this.plugin = plugin;
+        this.file = file;
+        open();
+        Utils.send("&eLoaded " + islandCache.size() + " islands and " + players.size() + " players from " + file.getName());
+        this.async = new AsyncDatabase(this, 1);
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ASkyBlock-Compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Flushing the dirty pages often keeps the loss on a crash small
+        this.compactor.scheduleWithFixedDelay(this::force, 5, 5, TimeUnit.SECONDS);
+        long interval = Math.max(1, Settings.logCompactInterval);
+        this.compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.MINUTES);
+    }
+
+    // ------------ ISLANDS ------------
+
+    @Override
+    public boolean setSpawnPosition(Position pos) {
+        IslandData spawn = islandCache.getSpawn();
+        if (spawn == null) {
+            return false;
+        }
+        spawn.homeX = pos.getFloorX();
+        spawn.homeY = pos.getFloorY();
+        spawn.homeZ = pos.getFloorZ();
+        return saveIsland(spawn);
+    }
+
+    @Override
+    public IslandData getIslandLocation(String levelName, int X, int Z) {
+        return getIslandAt(levelName, X, Z);
+    }
+
+    @Override
+    public IslandData getIslandAt(String levelName, int X, int Z) {
+        return islandCache.getAt(levelName, plugin.getIsland().generateIslandKey(levelName, X, Z));
+    }
+
+    @Override
+    public IslandData getIslandInCell(String levelName, long islandId) {
+        return islandCache.getAt(levelName, islandId);
+    }
+
+    @Override
+    public ArrayList<IslandData> getIslands(String owner) {
+        return islandCache.getIslands(owner);
+    }
+
+    @Override
+    public ArrayList<IslandData> getIslands(String owner, String levelName) {
+        return islandCache.getIslands(owner, levelName);
+    }
+
+    @Override
+    public IslandData getIsland(String name, int homes) {
+        return islandCache.getIsland(name, homes);
+    }
+
+    @Override
+    public boolean reserveCell(String levelName, long islandId) {
+        return islandCache.reserve(levelName, islandId);
+    }
+
+    @Override
+    public void releaseCell(String levelName, long islandId) {
+        islandCache.release(levelName, islandId);
+    }
+
+    @Override
+    public IslandData getSpawn() {
+        return islandCache.getSpawn();
+    }
+
+    @Override
+    public synchronized boolean createIsland(IslandData pd) {
+        if (saveIsland(pd)) {
+            return true;
+        }
+        // Nothing reached the log, the caller gives the cell back
+        islandCache.remove(pd);
+        islands.remove(key(pd));
+        live.remove("i:" + key(pd));
+        return false;
+    }
+
+    @Override
+    public synchronized boolean saveIsland(IslandData pd) {
+        islandCache.add(pd);
+        islands.put(key(pd), pd);
+        return append(ISLAND, "i:" + key(pd), out -> writeIsland(out, pd));
+    }
+
+    @Override
+    public synchronized boolean deleteIsland(IslandData pd) {
+        IslandData removed = islandCache.remove(pd);
+        String key = key(removed != null ? removed : pd);
+        islands.remove(key);
+        live.remove("i:" + key);
+        return append(ISLAND_DELETE, null, out -> out.writeUTF(key));
+    }
+
+    // ------------ WORLDS ------------
+
+    @Override
+    public synchronized ArrayList<String> getWorlds() {
+        return new ArrayList<>(worlds);
+    }
+
+    @Override
+    public synchronized boolean saveWorlds(ArrayList<String> pd) {
+        boolean result = true;
+        for (String world : pd) {
+            if (!worlds.contains(world)) {
+                worlds.add(world);
+                result &= append(WORLD, "w:" + world, out -> out.writeUTF(world));
+            }
+        }
+        return result;
+    }
+
+    // ------------ PLAYERS ------------
+
+    @Override
+    public synchronized List<String> getPlayersData() {
+        return new ArrayList<>(players.keySet());
+    }
+
+    @Override
+    public synchronized HashMap<String, ArrayList<String>> getTeams() {
+        HashMap<String, ArrayList<String>> teams = new HashMap<>();
+        for (PlayerData pd : players.values()) {
+            if (pd.members != null && !pd.members.isEmpty()) {
+                teams.put(pd.playerName, new ArrayList<>(pd.members));
+            }
+        }
+        return teams;
+    }
+
+    @Override
+    public synchronized PlayerData getPlayerData(String st) {
+        return players.get(st);
+    }
+
+    @Override
+    public synchronized boolean createPlayer(String p) {
+        return savePlayerData(new PlayerData(p, 0, Settings.reset));
+    }
+
+    @Override
+    public synchronized boolean savePlayerData(PlayerData pd) {
+        players.put(pd.playerName, pd);
+        pd.changedChallenges.clear();
+        return append(PLAYER, "p:" + pd.playerName, out -> writePlayer(out, pd));
+    }
+
+    @Override
+    public void queuePlayerData(PlayerData pd) {
+        // An append is cheap enough to not need a save window
+        savePlayerData(pd);
+    }
+
+    @Override
+    public void flushPlayerData(String player) {
+        // Every save is appended right away, nothing is pending
+    }
+
+    @Override
+    public CompletableFuture<PlayerData> openSession(String player) {
+        // Every player is in memory already
+        if (getPlayerData(player) == null) {
+            createPlayer(player);
+        }
+        return CompletableFuture.completedFuture(getPlayerData(player));
+    }
+
+    @Override
+    public void closeSession(String player) {
+        // Players stay in memory and every save is appended right away
+    }
+
+    @Override
+    public AsyncDatabase async() {
+        return async;
+    }
+
+    @Override
+    public QueryStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        async.shutdown();
+        synchronized (ioLock) {
+            synchronized (this) {
+                try {
+                    buffer.force();
+                    channel.close();
+                } catch (IOException ex) {
+                    Utils.send("&cUnable to close " + file.getName() + ": " + ex.getMessage());
+                }
+            }
+        }
+        islandCache.clear();
+    }
+
+    // ------------ LOG ------------
+
+    private void open() throws IOException {
+        boolean exists = file.exists() && file.length() >= FILE_HEADER;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+        if (!exists) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            position = FILE_HEADER;
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException(file.getName() + " is not an ASkyBlock storage log");
+        }
+        version = buffer.getInt(4);
+        replay();
+        if (version < VERSION) {
+            // New records can not be appended to a file in the old format
+            Utils.send("&eConverting " + file.getName() + " to the current format");
+            compact();
+            version = VERSION;
+        }
+    }
+
+    /**
+     * Reads every record in one pass from the start of the file
+     */
+    private void replay() {
+        int pos = FILE_HEADER;
+        CRC32 crc = new CRC32();
+        while (pos + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0) {
+                break;
+            }
+            if (pos + RECORD_HEADER + length > buffer.capacity()) {
+                damaged(pos);
+                break;
+            }
+            byte[] record = new byte[RECORD_HEADER + length];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(pos);
+            slice.get(record);
+            crc.reset();
+            crc.update(record, RECORD_HEADER, length);
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                damaged(pos);
+                break;
+            }
+            try {
+                apply(record);
+            } catch (IOException ex) {
+                damaged(pos);
+                break;
+            }
+            records++;
+            pos += RECORD_HEADER + length;
+        }
+        position = pos;
+    }
+
+    private void damaged(int pos) {
+        Utils.send("&cThe storage log " + file.getName() + " is damaged at byte " + pos + ", the rest of it is ignored");
+        // Clear the tail so the next records are not mixed with the damaged ones
+        for (int i = pos; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private void apply(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, RECORD_HEADER, record.length - RECORD_HEADER));
+        switch (in.readByte()) {
+            case ISLAND:
+                IslandData pd = readIsland(in, version);
+                long stored = pd.getIslandId();
+                // Older files could be keyed with the global island distance
+                pd.setIslandId(IslandManager.cellKey(pd.getCenter().getFloorX(), pd.getCenter().getFloorZ(), plugin.getPlotSize(pd.getLevelName())));
+                IslandData old = islands.put(key(pd), pd);
+                if (old != null) {
+                    islandCache.remove(old);
+                }
+                IslandData taken = islandCache.getAt(pd.getLevelName(), pd.getIslandId());
+                if (taken != null && taken != pd) {
+                    Utils.send("&cThe island " + key(pd) + " is in the same grid cell as " + key(taken) + ", only the last one is protected");
+                }
+                islandCache.add(pd);
+                // Islands from an older format, or with a new key, are written again when the file is compacted
+                boolean current = version == VERSION && stored == pd.getIslandId();
+                live.put("i:" + key(pd), current ? record : record(ISLAND, out -> writeIsland(out, pd)));
+                break;
+            case ISLAND_DELETE:
+                String key = in.readUTF();
+                IslandData removed = islands.remove(key);
+                if (removed != null) {
+                    islandCache.remove(removed);
+                }
+                live.remove("i:" + key);
+                break;
+            case PLAYER:
+                PlayerData player = readPlayer(in);
+                players.put(player.playerName, player);
+                live.put("p:" + player.playerName, record);
+                break;
+            case WORLD:
+                String world = in.readUTF();
+                if (!worlds.contains(world)) {
+                    worlds.add(world);
+                }
+                live.put("w:" + world, record);
+                break;
+            default:
+                throw new IOException("Unknown record type");
+        }
+    }
+
+    /**
+     * @param type   The record type
+     * @param key    What the record replaces in the live set, null if it replaces nothing
+     * @param writer Writes the body
+     * @return true if the record was appended
+     */
+    private synchronized boolean append(byte type, String key, RecordWriter writer) {
+        long start = System.nanoTime();
+        try {
+            byte[] record = record(type, writer);
+            if (key != null) {
+                live.put(key, record);
+            }
+            ensureCapacity(position + record.length + RECORD_HEADER);
+            // The length goes in last, until then the record reads as the end of the log
+            ByteBuffer target = buffer.duplicate();
+            target.position(position + 4);
+            target.put(record, 4, record.length - 4);
+            buffer.putInt(position, record.length - RECORD_HEADER);
+            position += record.length;
+            records++;
+            stats.record("append", start);
+            return true;
+        } catch (IOException ex) {
+            stats.error("append", ex);
+            return false;
+        }
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        long size = buffer.capacity();
+        while (size < needed) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The storage log is full");
+        }
+        // The old mapping shares its pages with the new one, it does not need a flush
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static byte[] record(byte type, RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        // Room for the header, filled in below
+        out.writeLong(0);
+        out.writeByte(type);
+        writer.write(out);
+        out.flush();
+        byte[] record = bytes.toByteArray();
+        int length = record.length - RECORD_HEADER;
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, length);
+        ByteBuffer header = ByteBuffer.wrap(record);
+        header.putInt(0, length);
+        header.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Flushes the dirty pages. Appends keep going into the same mapping
+     * while the disk catches up.
+     */
+    private void force() {
+        synchronized (ioLock) {
+            MappedByteBuffer current;
+            synchronized (this) {
+                if (!channel.isOpen()) {
+                    return;
+                }
+                current = buffer;
+            }
+            current.force();
+        }
+    }
+
+    private void compactIfNeeded() {
+        int live;
+        synchronized (this) {
+            live = this.live.size();
+            if (records < live * 2 + 1024) {
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            compact();
+            stats.record("compact", start);
+        } catch (IOException ex) {
+            stats.error("compact", ex);
+        }
+    }
+
+    /**
+     * Rewrites the live records into a new file. The encoded records are
+     * taken under the lock, writing and flushing them is not. What was
+     * appended in the meantime is copied over until only a little is
+     * left, that last part is copied under the lock and the new file is
+     * swapped in by a rename, so appends never wait for the disk.
+     */
+    private void compact() throws IOException {
+        synchronized (ioLock) {
+            List<byte[]> snapshot;
+            int tail;
+            int replaced;
+            synchronized (this) {
+                snapshot = new ArrayList<>(live.values());
+                tail = position;
+                replaced = records;
+            }
+            File temp = new File(file.getPath() + ".compact");
+            FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean swapped = false;
+            MappedByteBuffer mapped;
+            try {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                out.write(header);
+                for (byte[] record : snapshot) {
+                    out.write(ByteBuffer.wrap(record));
+                }
+                // Catch up with the appends, then flush everything but the last few
+                tail = copyAppended(out, tail, COMPACT_TAIL);
+                out.force(true);
+                synchronized (this) {
+                    copyAppended(out, tail, 0);
+                    int end = (int) out.position();
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    swapped = true;
+                    // The old mapping stays valid, pages it still holds are already copied
+                    channel.close();
+                    channel = out;
+                    buffer = out.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, end * 2L));
+                    mapped = buffer;
+                    records = snapshot.size() + records - replaced;
+                    position = end;
+                }
+                // The records copied under the lock, as exposed to a crash as any other append until now
+                mapped.force();
+            } finally {
+                if (!swapped) {
+                    // Keep using the old log
+                    out.close();
+                    Files.deleteIfExists(temp.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the records appended after this offset to the new file
+     *
+     * @param from  Where the records not yet copied start
+     * @param until Stops once fewer bytes than this are left
+     * @return Where the records not yet copied start now
+     */
+    private int copyAppended(FileChannel out, int from, int until) throws IOException {
+        while (true) {
+            ByteBuffer appended;
+            synchronized (this) {
+                if (position - from <= until) {
+                    return from;
+                }
+                appended = buffer.duplicate();
+                appended.limit(position);
+            }
+            appended.position(from);
+            from = appended.limit();
+            out.write(appended);
+        }
+    }
+
+    private static String key(IslandData pd) {
+        return pd.getLevelName() + ':' + pd.getCenter().getFloorX() + ':' + pd.getCenter().getFloorZ();
+    }
+
+    // ------------ RECORDS ------------
+
+    private static void writeIsland(DataOutputStream out, IslandData pd) throws IOException {
+        writeString(out, pd.getLevelName());
+        out.writeInt(pd.getCenter().getFloorX());
+        out.writeInt(pd.getCenter().getFloorY());
+        out.writeInt(pd.getCenter().getFloorZ());
+        out.writeInt(pd.homeX);
+        out.writeInt(pd.homeY);
+        out.writeInt(pd.homeZ);
+        out.writeInt(pd.getProtectionSize());
+        writeString(out, pd.getName());
+        writeString(out, pd.getOwner());
+        writeString(out, pd.getBiome());
+        out.writeInt(pd.getId());
+        out.writeLong(pd.getIslandId());
+        out.writeBoolean(pd.isLocked());
+        out.writeLong(pd.getFlags());
+        out.writeBoolean(pd.isSpawn());
+    }
+
+    private static IslandData readIsland(DataInputStream in, int version) throws IOException {
+        String levelName = readString(in);
+        int x = in.readInt();
+        int y = in.readInt();
+        int z = in.readInt();
+        int homeX = in.readInt();
+        int homeY = in.readInt();
+        int homeZ = in.readInt();
+        int size = in.readInt();
+        String name = readString(in);
+        String owner = readString(in);
+        String biome = readString(in);
+        int id = in.readInt();
+        long islandId = version < 2 ? in.readInt() : in.readLong();
+        boolean locked = in.readBoolean();
+        String legacy = version < 3 ? readString(in) : null;
+        long flags = version < 3 ? 0 : in.readLong();
+        boolean isSpawn = in.readBoolean();
+        if (version < 3) {
+            flags = IslandData.parseLegacyFlags(legacy, isSpawn);
+        }
+        IslandData pd = new IslandData(levelName, x, y, z, homeX, homeY, homeZ, size, name, owner, biome, id, islandId, locked, flags, isSpawn);
+        return pd;
+    }
+
+    private static void writePlayer(DataOutputStream out, PlayerData pd) throws IOException {
+        writeString(out, pd.playerName);
+        out.writeInt(pd.homes);
+        out.writeInt(pd.resetleft);
+        out.writeInt(pd.islandLevel);
+        out.writeBoolean(pd.inTeam);
+        writeString(out, pd.teamLeader);
+        writeString(out, pd.teamIslandLocation);
+        writeString(out, pd.name);
+        writeString(out, pd.pubLocale);
+        writeList(out, pd.members);
+        writeList(out, pd.banList);
+        Set<String> challenges = new HashSet<>(pd.challengeList.keySet());
+        challenges.addAll(pd.challengeListTimes.keySet());
+        out.writeInt(challenges.size());
+        for (String challenge : challenges) {
+            out.writeUTF(challenge);
+            out.writeBoolean(pd.challengeList.getOrDefault(challenge, false));
+            out.writeInt(pd.challengeListTimes.getOrDefault(challenge, 0));
+        }
+    }
+
+    private static PlayerData readPlayer(DataInputStream in) throws IOException {
+        String playerName = readString(in);
+        int homes = in.readInt();
+        int resetleft = in.readInt();
+        int islandLevel = in.readInt();
+        boolean inTeam = in.readBoolean();
+        String teamLeader = readString(in);
+        String teamIslandLocation = readString(in);
+        String name = readString(in);
+        String locale = readString(in);
+        ArrayList<String> members = readList(in);
+        ArrayList<String> banList = readList(in);
+        PlayerData pd = new PlayerData(playerName, homes, members, new HashMap<>(), new HashMap<>(), islandLevel, inTeam,
+            teamLeader, teamIslandLocation, resetleft, banList, locale);
+        pd.name = name;
+        for (int i = in.readInt(); i > 0; i--) {
+            String challenge = in.readUTF();
+            pd.challengeList.put(challenge, in.readBoolean());
+            pd.challengeListTimes.put(challenge, in.readInt());
+        }
+        return pd;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (String value : list) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static ArrayList<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        ArrayList<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(in.readUTF());
+        }
+        return list;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+}
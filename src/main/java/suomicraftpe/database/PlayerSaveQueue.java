@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.player.PlayerData;
+import suomicraftpe.task.TaskManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects changed players and writes them together. Every change to the
+ * same player inside the save window ends up in one row update, and all
+ * players that changed in the window share one batch.
+ * <p>
+ * Players are copied on the server thread when the window closes, so the
+ * database thread never reads a PlayerData that is still being changed.
+ *
+ * @author Adam Matthew
+ */
+public final class PlayerSaveQueue {
+
+    private final Consumer<List<PlayerData>> sink;
+    private final int delay;
+    // Changed since the last flush
+    private final LinkedHashMap<String, PlayerData> dirty = new LinkedHashMap<>();
+    // Copies that were flushed but not yet written by the database thread
+    private final HashMap<String, PlayerData> writing = new HashMap<>();
+    // copy -> the player it was taken from, to hand back a failed write
+    private final IdentityHashMap<PlayerData, PlayerData> sources = new IdentityHashMap<>();
+    private boolean scheduled = false;
+
+    /**
+     * @param sink   Writes the copies, called on the server thread
+     * @param window How long changes are collected, in milliseconds
+     */
+    public PlayerSaveQueue(Consumer<List<PlayerData>> sink, long window) {
+        this.sink = sink;
+        this.delay = (int) Math.max(1, window / 50);
+    }
+
+    /**
+     * Marks a player as changed, it will be written when the current save
+     * window closes.
+     *
+     * @param pd The player
+     */
+    public synchronized void add(PlayerData pd) {
+        dirty.put(pd.playerName, pd);
+        if (!scheduled) {
+            scheduled = true;
+            TaskManager.runTaskLater(this::flush, delay);
+        }
+    }
+
+    /**
+     * Get the newest copy of a player that has not reached the database yet
+     *
+     * @param player The player name
+     * @return The player, or null if nothing is pending
+     */
+    public synchronized PlayerData getPending(String player) {
+        PlayerData pd = dirty.get(player);
+        return pd != null ? pd : writing.get(player);
+    }
+
+    /**
+     * Writes a single player right away, used when the player leaves.
+     *
+     * @param player The player name
+     */
+    public void flush(String player) {
+        PlayerData pd;
+        synchronized (this) {
+            PlayerData source = dirty.remove(player);
+            if (source == null) {
+                return;
+            }
+            pd = source.snapshot();
+            writing.put(player, pd);
+            sources.put(pd, source);
+        }
+        List<PlayerData> batch = new ArrayList<>(1);
+        batch.add(pd);
+        sink.accept(batch);
+    }
+
+    /**
+     * Writes every changed player right away
+     */
+    public void flush() {
+        List<PlayerData> batch;
+        synchronized (this) {
+            scheduled = false;
+            if (dirty.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(dirty.size());
+            for (PlayerData pd : dirty.values()) {
+                PlayerData copy = pd.snapshot();
+                batch.add(copy);
+                writing.put(copy.playerName, copy);
+                sources.put(copy, pd);
+            }
+            dirty.clear();
+        }
+        sink.accept(batch);
+    }
+
+    /**
+     * Called by the database thread once a batch has been written. A
+     * batch that failed goes back to the queue on the server thread, with
+     * its changed challenges, and is written with the next window.
+     *
+     * @param batch   The copies that were written
+     * @param success false if the batch was not committed
+     */
+    public void written(List<PlayerData> batch, boolean success) {
+        if (success) {
+            synchronized (this) {
+                for (PlayerData pd : batch) {
+                    sources.remove(pd);
+                    // A newer copy may already be on its way
+                    writing.remove(pd.playerName, pd);
+                }
+            }
+            return;
+        }
+        // The copies stay pending until the players are queued again, so
+        // a read in between never falls back to the old row
+        TaskManager.runTask(() -> {
+            for (PlayerData pd : batch) {
+                PlayerData source;
+                synchronized (this) {
+                    source = sources.remove(pd);
+                    writing.remove(pd.playerName, pd);
+                }
+                if (source != null) {
+                    source.restoreChanges(pd);
+                    add(source);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.utils.Settings;
+import suomicraftpe.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts, error counts and latencies of every database operation.
+ * <p>
+ * Recording is a map lookup and a few atomic increments, the latencies
+ * go into fixed log-scale buckets (4 per power of two, so percentiles are
+ * within 25%) instead of keeping samples. The call site of a query is only
+ * looked up when the query was slower than the slow-query threshold.
+ *
+ * @author Adam Matthew
+ */
+public final class QueryStats {
+
+    // Buckets 0-3 hold 0-3us, after that 4 buckets per power of two up to ~2^40us
+    private static final int BUCKETS = 160;
+
+    private final ConcurrentHashMap<String, Histogram> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Record a successful operation
+     *
+     * @param operation Name of the operation
+     * @param start     {@link System#nanoTime()} when it started
+     */
+    public void record(String operation, long start) {
+        long elapsed = System.nanoTime() - start;
+        histogram(operation).add(TimeUnit.NANOSECONDS.toMicros(elapsed));
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        if (Settings.slowQueryThreshold > 0 && millis >= Settings.slowQueryThreshold) {
+            Utils.send("&eSlow database query: " + operation + " took " + millis + "ms (" + callSite() + ")");
+        }
+    }
+
+    /**
+     * Record a failed operation
+     *
+     * @param operation Name of the operation
+     * @param ex        The reason it failed
+     */
+    public void error(String operation, Exception ex) {
+        histogram(operation).errors.incrementAndGet();
+        Utils.send("&cDatabase error in " + operation + ": " + ex.getMessage() + " (" + callSite() + ")");
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * One line per operation, sorted by name
+     *
+     * @return The report lines, empty if nothing was recorded
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(operations).entrySet()) {
+            Histogram h = entry.getValue();
+            lines.add("&e" + entry.getKey() + "&7: &a" + h.count.get() + " &7calls, &c" + h.errors.get() + " &7errors, p50 &a"
+                + format(h.percentile(0.50)) + "&7, p99 &a" + format(h.percentile(0.99)) + "&7, max &a" + format(h.max.get()));
+        }
+        return lines;
+    }
+
+    private Histogram histogram(String operation) {
+        Histogram h = operations.get(operation);
+        return h != null ? h : operations.computeIfAbsent(operation, k -> new Histogram());
+    }
+
+    private static String format(long micros) {
+        return String.format("%.2fms", micros / 1000.0);
+    }
+
+    /**
+     * The first frame outside of the database package, queries that run
+     * on the database threads only have the thread name
+     */
+    private static String callSite() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            if (!frame.getClassName().startsWith("suomicraftpe.database.") && !frame.getClassName().startsWith("java.")) {
+                return frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+        return Thread.currentThread().getName();
+    }
+
+    private static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(0, micros);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exp - 2)) & 3;
+        return Math.min(BUCKETS - 1, (exp - 1) * 4 + sub);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exp = bucket / 4 + 1;
+        int sub = bucket % 4;
+        return ((5L + sub) << (exp - 2)) - 1;
+    }
+
+    private static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private void add(long micros) {
+            buckets.incrementAndGet(bucket(micros));
+            count.incrementAndGet();
+            max.accumulateAndGet(micros, Math::max);
+        }
+
+        private long percentile(double p) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    // Never report more than the slowest call actually seen
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
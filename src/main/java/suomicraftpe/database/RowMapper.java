@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.player.PlayerData;
+import suomicraftpe.storage.IslandData;
+import suomicraftpe.utils.Utils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+/**
+ * Turns rows into objects. Queries select the column lists below, so the
+ * position of every column is known up front and rows are read by index
+ * instead of looking each column up by name.
+ *
+ * @author Adam Matthew
+ */
+public final class RowMapper {
+
+    /**
+     * Columns read by {@link #toIsland(ResultSet)}, in order
+     */
+    public static final String ISLAND_COLUMNS = "`world`, `x`, `y`, `z`, `spawnX`, `spawnY`, `spawnZ`, `psize`, `name`, "
+        + "`owner`, `biome`, `id`, `islandId`, `locked`, `flags`, `isSpawn`";
+    /**
+     * Columns read by {@link #toPlayer(ResultSet)}, in order
+     */
+    public static final String PLAYER_COLUMNS = "`player`, `homes`, `members`, `islandlvl`, `inteam`, `teamleader`, "
+        + "`teamislandlocation`, `resetleft`, `banlist`, `locale`";
+
+    private RowMapper() {
+    }
+
+    public static IslandData toIsland(ResultSet set) throws SQLException {
+        return new IslandData(
+            set.getString(1),
+            set.getInt(2),
+            set.getInt(3),
+            set.getInt(4),
+            set.getInt(5),
+            set.getInt(6),
+            set.getInt(7),
+            set.getInt(8),
+            set.getString(9),
+            set.getString(10),
+            set.getString(11),
+            set.getInt(12),
+            set.getLong(13),
+            set.getBoolean(14),
+            set.getLong(15),
+            set.getBoolean(16));
+    }
+
+    /**
+     * Challenges are not part of the row, they are added by the caller
+     */
+    public static PlayerData toPlayer(ResultSet set) throws SQLException {
+        return new PlayerData(
+            set.getString(1),
+            set.getInt(2),
+            Utils.stringToArray(set.getString(3), ", "),
+            new HashMap<>(),
+            new HashMap<>(),
+            set.getInt(4),
+            set.getBoolean(5),
+            set.getString(6),
+            set.getString(7),
+            set.getInt(8),
+            Utils.stringToArray(set.getString(9), ", "),
+            set.getString(10));
+    }
+}
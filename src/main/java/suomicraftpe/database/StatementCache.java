@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepared statements of one physical connection, keyed by their SQL.
+ * Every query shape is prepared once per connection and handed out again
+ * on the next prepareStatement() call. Closing a handed out statement
+ * only closes its result sets and clears the parameters.
+ *
+ * @author Adam Matthew
+ */
+public final class StatementCache {
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * @param connection The physical connection
+     * @param maxSize    Statements kept per connection, the least recently used one is closed
+     */
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException ignored) {
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the prepared statement for this query, preparing it if this is
+     * the first time it is used on this connection.
+     *
+     * @param sql The query
+     * @return Statement that is only reset when closed
+     * @throws SQLException if the statement can not be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return wrap(statement);
+    }
+
+    /**
+     * Closes every cached statement
+     */
+    public void close() {
+        for (Iterator<PreparedStatement> it = statements.values().iterator(); it.hasNext(); ) {
+            try {
+                it.next().close();
+            } catch (SQLException ignored) {
+            }
+            it.remove();
+        }
+    }
+
+    private PreparedStatement wrap(PreparedStatement statement) {
+        List<ResultSet> results = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close":
+                    for (ResultSet set : results) {
+                        set.close();
+                    }
+                    results.clear();
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    return null;
+                default:
+                    try {
+                        Object result = method.invoke(statement, args);
+                        if (result instanceof ResultSet) {
+                            results.add((ResultSet) result);
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        });
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import suomicraftpe.utils.Utils;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs database writes on background threads. Every write has a key,
+ * writes with the same key go to the same thread in FIFO order, so a
+ * create, update and delete of the same row always reach the database in
+ * the order they were issued on the main thread. Writes with different
+ * keys may run in parallel when there is more than one writer.
+ * <p>
+ * Writes that pile up while a thread is busy are committed together in
+ * one transaction on one connection, which is one disk sync on SQLite
+ * instead of one per row. Each write runs inside its own savepoint, a
+ * write that fails is rolled back on its own and does not take the rest
+ * of the batch with it.
+ *
+ * @author Adam Matthew
+ */
+public final class WriteBehindQueue {
+
+    // Upper limit of writes that share a transaction
+    private static final int MAX_BATCH = 256;
+    // How long call() waits for its write
+    private static final long CALL_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final ConnectionPool pool;
+    private final QueryStats stats;
+    private final Lane[] lanes;
+    private volatile boolean running = true;
+
+    public WriteBehindQueue(String name, ConnectionPool pool, QueryStats stats) {
+        this(name, pool, stats, 1);
+    }
+
+    /**
+     * @param writers Threads that write in parallel, each with its own connection
+     */
+    public WriteBehindQueue(String name, ConnectionPool pool, QueryStats stats, int writers) {
+        this.pool = pool;
+        this.stats = stats;
+        this.lanes = new Lane[Math.max(1, writers)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(lanes.length == 1 ? name : name + "-" + (i + 1));
+        }
+    }
+
+    /**
+     * Queue a write that is not tied to a row, these all share one thread
+     *
+     * @param operation Name of the operation, used in the statistics and the error log
+     * @param task      The write
+     * @return Completes once the write is committed, with false if it failed
+     */
+    public CompletableFuture<Boolean> submit(String operation, SQLTask task) {
+        return submit(null, operation, task);
+    }
+
+    /**
+     * Queue a write for the database thread of its key
+     *
+     * @param key       The row that is written, writes of the same key stay in order
+     * @param operation Name of the operation, used in the statistics and the error log
+     * @param task      The write
+     * @return Completes once the write is committed, with false if it failed
+     * or the queue has been shut down
+     */
+    public CompletableFuture<Boolean> submit(String key, String operation, SQLTask task) {
+        Write write = new Write(operation, task);
+        // The lock keeps a write from slipping in after shutdown() let the threads finish
+        synchronized (this) {
+            if (running) {
+                lanes[lane(key)].queue.add(write);
+                return write.result;
+            }
+        }
+        Utils.send("&cThe database is closed, " + operation + " was not written");
+        write.result.complete(false);
+        return write.result;
+    }
+
+    /**
+     * Queue a write and wait until it is committed. Used by the calls that
+     * still report their result, the write is serialized with every other
+     * write of its key all the same.
+     *
+     * @param key       The row that is written
+     * @param operation Name of the operation, used in the statistics and the error log
+     * @param task      The write
+     * @return true if the write was committed, false if it failed or did
+     * not finish in time
+     */
+    public boolean call(String key, String operation, SQLTask task) {
+        try {
+            return submit(key, operation, task).get(CALL_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Utils.send("&cTimed out waiting for " + operation + " to be written");
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param key The row that is written, null for writes that are not tied to a row
+     * @return The thread the writes of this key run on
+     */
+    public int lane(String key) {
+        return key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * @return Threads that write in parallel
+     */
+    public int getWriters() {
+        return lanes.length;
+    }
+
+    private void write(List<Write> batch) {
+        boolean[] success = new boolean[batch.size()];
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    Write write = batch.get(i);
+                    Savepoint savepoint = con.setSavepoint();
+                    success[i] = run(con, write);
+                    if (!success[i]) {
+                        // Drop what the write did before it failed, keep the others
+                        con.rollback(savepoint);
+                    }
+                }
+                long start = System.nanoTime();
+                con.commit();
+                stats.record("commit", start);
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            stats.error("commit", ex);
+            if (batch.size() > 1) {
+                Utils.send("&c" + batch.size() + " database writes were not committed, writing them one by one");
+            }
+            success = writeEach(batch);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(success[i]);
+        }
+    }
+
+    /**
+     * Writes every write of a batch that could not be committed in its
+     * own transaction, so one bad write or a connection that broke half
+     * way only loses what really failed
+     */
+    private boolean[] writeEach(List<Write> batch) {
+        boolean[] success = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Connection con;
+            try {
+                con = pool.getConnection();
+            } catch (SQLException ex) {
+                // The database is gone, retrying the rest would only wait for the timeout again
+                stats.error("commit", ex);
+                Utils.send("&c" + (batch.size() - i) + " database writes were not committed: " + ex.getMessage());
+                break;
+            }
+            try {
+                con.setAutoCommit(false);
+                try {
+                    if (run(con, batch.get(i))) {
+                        long start = System.nanoTime();
+                        con.commit();
+                        stats.record("commit", start);
+                        success[i] = true;
+                    } else {
+                        con.rollback();
+                    }
+                } catch (SQLException ex) {
+                    stats.error("commit", ex);
+                    con.rollback();
+                } finally {
+                    con.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                stats.error("commit", ex);
+            } finally {
+                try {
+                    con.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+        return success;
+    }
+
+    private boolean run(Connection con, Write write) {
+        long start = System.nanoTime();
+        try {
+            write.task.run(con);
+            stats.record(write.operation, start);
+            return true;
+        } catch (BatchUpdateException b) {
+            JDBCUtilities.printBatchUpdateException(b);
+            stats.error(write.operation, b);
+        } catch (SQLException ex) {
+            stats.error(write.operation, ex);
+        } catch (RuntimeException ex) {
+            stats.error(write.operation, new SQLException(ex));
+        }
+        return false;
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to reach the
+     * database. Writes still queued when the wait times out are failed.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+        }
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        try {
+            for (Lane lane : lanes) {
+                lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Lane lane : lanes) {
+            if (lane.thread.isAlive()) {
+                List<Write> left = new ArrayList<>();
+                lane.queue.drainTo(left);
+                Utils.send("&cTimed out while flushing pending database writes, " + left.size() + " were not written");
+                for (Write write : left) {
+                    write.result.complete(false);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface SQLTask {
+
+        void run(Connection con) throws SQLException;
+    }
+
+    private static final class Write {
+
+        private final String operation;
+        private final SQLTask task;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Write(String operation, SQLTask task) {
+            this.operation = operation;
+            this.task = task;
+        }
+    }
+
+    /**
+     * One writer thread and the writes waiting for it
+     */
+    private final class Lane {
+
+        private final LinkedBlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+
+        private Lane(String name) {
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void run() {
+            List<Write> batch = new ArrayList<>();
+            while (running || !queue.isEmpty()) {
+                try {
+                    Write first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    write(batch);
+                } catch (InterruptedException e) {
+                    // Keep going until every queued write is done
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
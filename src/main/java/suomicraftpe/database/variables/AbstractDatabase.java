@@ -28,6 +28,29 @@ public interface AbstractDatabase {
 
     Connection forceConnection() throws SQLException, ClassNotFoundException;
 
+    /**
+     * Opens a new physical connection with the database. Unlike
+     * {@link #openConnection()} the connection is not remembered by this
+     * object, the caller owns it. Used by the connection pool.
+     *
+     * @return New connection
+     * @throws SQLException           if the connection can not be opened
+     * @throws ClassNotFoundException if the driver cannot be found
+     */
+    Connection createConnection() throws SQLException, ClassNotFoundException;
+
+    /**
+     * Opens a new physical connection that is only used for reading.
+     * Backends without a separate read mode hand out a normal connection.
+     *
+     * @return New connection
+     * @throws SQLException           if the connection can not be opened
+     * @throws ClassNotFoundException if the driver cannot be found
+     */
+    default Connection createReadConnection() throws SQLException, ClassNotFoundException {
+        return createConnection();
+    }
+
     /**
      * Opens a connection with the database.
      *
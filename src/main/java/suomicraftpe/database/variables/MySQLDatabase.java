@@ -32,6 +32,7 @@ public class MySQLDatabase implements AbstractDatabase {
     private final String password;
     private final int port;
     private final String hostname;
+    private final boolean serverPreparedStatements;
     private Connection connection;
 
     /**
@@ -44,22 +45,52 @@ public class MySQLDatabase implements AbstractDatabase {
      * @param password Password
      */
     public MySQLDatabase(String hostname, int port, String database, String username, String password) {
+        this(hostname, port, database, username, password, false);
+    }
+
+    /**
+     * Creates a new MySQL instance.
+     *
+     * @param hostname                 Name of the host
+     * @param port                     Port number
+     * @param database                 Database name
+     * @param username                 Username
+     * @param password                 Password
+     * @param serverPreparedStatements Use server side prepared statements and let the driver cache them
+     */
+    public MySQLDatabase(String hostname, int port, String database, String username, String password, boolean serverPreparedStatements) {
         this.hostname = hostname;
         this.port = port;
         this.database = database;
         this.user = username;
         this.password = password;
+        this.serverPreparedStatements = serverPreparedStatements;
         this.connection = null;
     }
 
+    private String getUrl() {
+        // Cursor fetch makes setFetchSize() stream big results instead of loading them at once
+        String url = "jdbc:mysql://" + this.hostname + ':' + this.port + '/' + this.database + "?useCursorFetch=true";
+        if (serverPreparedStatements) {
+            url += "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048";
+        }
+        return url;
+    }
+
     @Override
     public Connection forceConnection() throws SQLException, ClassNotFoundException {
         Class.forName("com.mysql.jdbc.Driver");
         this.connection =
-            DriverManager.getConnection("jdbc:mysql://" + this.hostname + ':' + this.port + '/' + this.database, this.user, this.password);
+            DriverManager.getConnection(getUrl(), this.user, this.password);
         return this.connection;
     }
 
+    @Override
+    public Connection createConnection() throws SQLException, ClassNotFoundException {
+        Class.forName("com.mysql.jdbc.Driver");
+        return DriverManager.getConnection(getUrl(), this.user, this.password);
+    }
+
     @Override
     public Connection openConnection() throws SQLException, ClassNotFoundException {
         if (checkConnection()) {
@@ -68,7 +99,7 @@ public class MySQLDatabase implements AbstractDatabase {
         Class.forName("com.mysql.jdbc.Driver");
         Utils.send("jdbc:mysql://" + this.hostname + ':' + this.port + '/' + this.database);
         this.connection =
-            DriverManager.getConnection("jdbc:mysql://" + this.hostname + ':' + this.port + '/' + this.database, this.user, this.password);
+            DriverManager.getConnection(getUrl(), this.user, this.password);
         return this.connection;
     }
 
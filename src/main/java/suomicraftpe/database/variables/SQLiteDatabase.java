@@ -29,9 +29,23 @@ public class SQLiteDatabase implements AbstractDatabase {
 
     private Connection connection;
     private String dbLocation;
+    private boolean wal;
 
     public SQLiteDatabase(File data) {
+        this(data, false);
+    }
+
+    /**
+     * @param data The database file
+     * @param wal  Use write-ahead logging so readers do not wait for the writer
+     */
+    public SQLiteDatabase(File data, boolean wal) {
         this.dbLocation = data.getAbsolutePath();
+        this.wal = wal;
+    }
+
+    public boolean isWal() {
+        return wal;
     }
 
     @Override
@@ -55,6 +69,46 @@ public class SQLiteDatabase implements AbstractDatabase {
         return this.connection;
     }
 
+    @Override
+    public Connection createConnection() throws SQLException, ClassNotFoundException {
+        File file = new File(this.dbLocation);
+        if (!file.exists()) {
+            try {
+                file.createNewFile();
+            } catch (IOException ignored) {
+                Utils.send("&cUnable to create database!");
+            }
+        }
+        Class.forName("org.sqlite.JDBC");
+        Connection con = DriverManager.getConnection("jdbc:sqlite:" + this.dbLocation);
+        try (Statement stmt = con.createStatement()) {
+            // Wait for the file lock instead of failing right away
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            if (wal) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+                // Safe with WAL, only the last commits can be lost on a power cut
+                stmt.execute("PRAGMA synchronous = NORMAL");
+                stmt.execute("PRAGMA temp_store = MEMORY");
+            }
+        } catch (SQLException ex) {
+            con.close();
+            throw ex;
+        }
+        return con;
+    }
+
+    @Override
+    public Connection createReadConnection() throws SQLException, ClassNotFoundException {
+        Connection con = createConnection();
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("PRAGMA query_only = true");
+        } catch (SQLException ex) {
+            con.close();
+            throw ex;
+        }
+        return con;
+    }
+
     @Override
     public boolean checkConnection() throws SQLException {
         return (this.connection != null) && !this.connection.isClosed();
@@ -22,7 +22,9 @@ import cn.nukkit.Server;
 import cn.nukkit.event.Event;
 import cn.nukkit.event.HandlerList;
 import cn.nukkit.level.Location;
+import suomicraftpe.ASkyBlock;
 import suomicraftpe.storage.IslandData;
+import suomicraftpe.storage.WorldSettings;
 import suomicraftpe.utils.Settings;
 
 /**
@@ -94,7 +96,8 @@ public class ASkyBlockEvent extends Event {
      * @return the islandDistance
      */
     public int getIslandDistance() {
-        return Settings.islandDistance;
+        WorldSettings ws = island != null ? ASkyBlock.get().getSettings(island.getLevelName()) : null;
+        return ws != null ? ws.getPlotSize() : Settings.islandDistance;
     }
 
     /**
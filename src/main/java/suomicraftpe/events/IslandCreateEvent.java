@@ -22,7 +22,9 @@ import cn.nukkit.event.Cancellable;
 import cn.nukkit.event.Event;
 import cn.nukkit.event.HandlerList;
 import cn.nukkit.level.Location;
+import suomicraftpe.ASkyBlock;
 import suomicraftpe.storage.IslandData;
+import suomicraftpe.storage.WorldSettings;
 import suomicraftpe.utils.Settings;
 
 /**
@@ -89,6 +91,7 @@ public class IslandCreateEvent extends Event implements Cancellable {
      * @return the islandDistance
      */
     public int getIslandDistance() {
-        return Settings.islandDistance;
+        WorldSettings ws = ASkyBlock.get().getSettings(island.getLevelName());
+        return ws != null ? ws.getPlotSize() : Settings.islandDistance;
     }
 }
@@ -28,13 +28,18 @@ import cn.nukkit.utils.MainLogger;
 import cn.nukkit.utils.TextFormat;
 import suomicraftpe.ASkyBlock;
 import suomicraftpe.storage.IslandData;
+import suomicraftpe.storage.WorldSettings;
 import suomicraftpe.utils.BlockUtil;
 import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import static cn.nukkit.math.BlockFace.DOWN;
 import static cn.nukkit.math.BlockFace.UP;
@@ -46,6 +51,8 @@ public class GridManager {
 
     private final ASkyBlock plugin;
     private MainLogger deb = Server.getInstance().getLogger();
+    private final LongAdder claimedLookups = new LongAdder();
+    private final LongAdder unclaimedLookups = new LongAdder();
 
     public GridManager(ASkyBlock plugin) {
         this.plugin = plugin;
@@ -72,7 +79,9 @@ public class GridManager {
     }
 
     public boolean onGrid(Location pos) {
-        return onGrid(pos.getFloorX(), pos.getFloorZ());
+        WorldSettings ws = plugin.level.get(pos.getLevel());
+        int distance = ws != null ? ws.getPlotSize() : Settings.islandDistance;
+        return pos.getFloorX() % distance == 0 || pos.getFloorZ() % distance == 0;
     }
 
     public boolean onGrid(int x, int z) {
@@ -103,11 +112,12 @@ public class GridManager {
         if (plugin.getIsland().checkIsland(player)) {
             IslandData pd = plugin.getIslandInfo(player);
             islandTestLocations.add(new Location(0, 0, 0, 0, 0, plugin.getServer().getLevelByName(pd.getLevelName())).add(pd.getCenter()));
-        } else if (plugin.getTManager().hasTeam(player)) {
-//            islandTestLocations.add(plugin.getPlayers().getTeamIslandLocation(player.getUniqueId()));
-//            if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null) {
-//                islandTestLocations.add(netherIsland(plugin.getPlayers().getTeamIslandLocation(player.getUniqueId())));
-//            }
+        }
+        // The islands of every team the player is in
+        for (String owner : plugin.getMemberIndex().getTeams(player.getName()).getNames()) {
+            for (IslandData team : plugin.getDatabase().getIslands(owner, loc.getLevel().getName())) {
+                islandTestLocations.add(new Location(0, 0, 0, 0, 0, loc.getLevel()).add(team.getCenter()));
+            }
         }
         if (islandTestLocations.isEmpty()) {
             return false;
@@ -270,17 +280,143 @@ public class GridManager {
         return true;
     }
 
+    /**
+     * Get the island protecting this location. Callers treat null as
+     * unclaimed space that only has the world protection settings.
+     *
+     * @param location The location
+     * @return The island, null if the cell is unclaimed or the location is
+     * outside its protection range
+     */
     public IslandData getProtectedIslandAt(Location location) {
-        IslandData island = plugin.getIslandInfo(location);
+        String levelName = location.getLevel().getName();
+        IslandData island = plugin.getDatabase().getIslandAt(levelName, location.getFloorX(), location.getFloorZ());
         if (island == null) {
+            // The registry holds every claimed cell, so a miss is final and
+            // nothing has to be invalidated when a cell is claimed later
+            unclaimedLookups.increment();
             return null;
         }
+        claimedLookups.increment();
         if (island.onIsland(location)) {
             return island;
         }
         return null;
     }
 
+    /**
+     * @return Protection lookups that found a claimed cell
+     */
+    public long getClaimedLookups() {
+        return claimedLookups.sum();
+    }
+
+    /**
+     * @return Protection lookups in unclaimed cells
+     */
+    public long getUnclaimedLookups() {
+        return unclaimedLookups.sum();
+    }
+
+    /**
+     * Get the islands whose center is inside a rectangle. Only the grid
+     * cells the rectangle covers are looked at.
+     *
+     * @param levelName The world
+     * @return The islands, empty if the world is not an island world
+     */
+    public List<IslandData> getIslandsIn(String levelName, int minX, int minZ, int maxX, int maxZ) {
+        List<IslandData> result = new ArrayList<>();
+        WorldSettings ws = plugin.getSettings(levelName);
+        if (ws == null) {
+            return result;
+        }
+        int size = ws.getPlotSize();
+        for (int cx = Math.floorDiv(minX, size); cx <= Math.floorDiv(maxX, size); cx++) {
+            for (int cz = Math.floorDiv(minZ, size); cz <= Math.floorDiv(maxZ, size); cz++) {
+                IslandData island = plugin.getDatabase().getIslandInCell(levelName, IslandManager.cellKeyOf(cx, cz));
+                if (island == null) {
+                    continue;
+                }
+                Vector3 center = island.getCenter();
+                if (center.x >= minX && center.x <= maxX && center.z >= minZ && center.z <= maxZ) {
+                    result.add(island);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the islands whose center is within a radius, the cells around
+     * the circle are looked at
+     *
+     * @param levelName The world
+     * @param radius    The radius in blocks
+     * @return The islands, nearest first
+     */
+    public List<IslandData> getIslandsNear(String levelName, int x, int z, int radius) {
+        List<IslandData> result = getIslandsIn(levelName, x - radius, z - radius, x + radius, z + radius);
+        long max = (long) radius * radius;
+        result.removeIf(island -> distanceSquared(island, x, z) > max);
+        result.sort(Comparator.comparingLong(island -> distanceSquared(island, x, z)));
+        return result;
+    }
+
+    /**
+     * Get the island with the nearest center. The cells are searched in
+     * rings around the position, and the search stops as soon as no cell
+     * further out can hold a nearer island.
+     *
+     * @param levelName The world
+     * @param maxRadius Islands further away than this are not found
+     * @return The island, null if there is none within the radius
+     */
+    public IslandData getNearestIsland(String levelName, int x, int z, int maxRadius) {
+        WorldSettings ws = plugin.getSettings(levelName);
+        if (ws == null) {
+            return null;
+        }
+        int size = ws.getPlotSize();
+        int cx = Math.floorDiv(x, size);
+        int cz = Math.floorDiv(z, size);
+        int rings = maxRadius / size + 1;
+        IslandData best = null;
+        long bestDistance = (long) maxRadius * maxRadius + 1;
+        for (int k = 0; k <= rings; k++) {
+            // Every cell of ring k is at least k - 1 cells away
+            long reach = (long) Math.max(0, k - 1) * size;
+            if (reach * reach >= bestDistance) {
+                break;
+            }
+            for (int i = -k; i <= k; i++) {
+                for (int j = -k; j <= k; j++) {
+                    if (Math.abs(i) != k && Math.abs(j) != k) {
+                        // Inside the ring, skip to its other side
+                        j = k - 1;
+                        continue;
+                    }
+                    IslandData island = plugin.getDatabase().getIslandInCell(levelName, IslandManager.cellKeyOf(cx + i, cz + j));
+                    if (island == null) {
+                        continue;
+                    }
+                    long distance = distanceSquared(island, x, z);
+                    if (distance < bestDistance) {
+                        best = island;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static long distanceSquared(IslandData island, int x, int z) {
+        long dx = island.getCenter().getFloorX() - x;
+        long dz = island.getCenter().getFloorZ() - z;
+        return dx * dx + dz * dz;
+    }
+
     public boolean isAtSpawn(Location location) {
         return plugin.getDatabase().getSpawn().onIsland(location);
     }
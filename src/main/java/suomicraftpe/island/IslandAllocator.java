@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.island;
+
+import suomicraftpe.ASkyBlock;
+import suomicraftpe.utils.Pair;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Hands out island cells in a square spiral around the origin, so the
+ * islands of a world stay packed together (fewer chunks and region files)
+ * and a new island is found without searching.
+ * <p>
+ * Nothing is stored for this: the spiral position starts at the origin on
+ * every startup and steps over the claimed cells, which also picks up the
+ * cells that were freed while the server was down. Cells freed while it
+ * runs go on a free list and are handed out first.
+ *
+ * @author Adam Matthew
+ */
+public final class IslandAllocator {
+
+    private final ASkyBlock plugin;
+    private final HashMap<String, Spiral> worlds = new HashMap<>();
+
+    public IslandAllocator(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Reserves the next free cell of this world. The caller either creates
+     * the island there or gives the cell back with {@link #release}.
+     *
+     * @param levelName The world
+     * @return The block x and z of the cell center
+     */
+    public synchronized Pair allocate(String levelName) {
+        Spiral spiral = worlds.computeIfAbsent(levelName, k -> new Spiral());
+        while (!spiral.free.isEmpty()) {
+            Pair cell = reserve(levelName, spiral.free.pop());
+            if (cell != null) {
+                return cell;
+            }
+        }
+        while (true) {
+            Pair cell = reserve(levelName, spiral.next++);
+            if (cell != null) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * Gives a cell back, either because the island was not created after
+     * all or because it was deleted and its blocks are cleared.
+     *
+     * @param levelName The world
+     * @param x         Any block x in the cell
+     * @param z         Any block z in the cell
+     */
+    public synchronized void release(String levelName, int x, int z) {
+        int distance = distance(levelName);
+        plugin.getDatabase().releaseCell(levelName, IslandManager.cellKey(x, z, distance));
+        Spiral spiral = worlds.get(levelName);
+        long index = index(Math.floorDiv(x, distance), Math.floorDiv(z, distance));
+        // Cells ahead of the spiral are found by the spiral itself
+        if (spiral != null && index < spiral.next) {
+            spiral.free.push(index);
+        }
+    }
+
+    private Pair reserve(String levelName, long index) {
+        int[] cell = cell(index);
+        int distance = distance(levelName);
+        int x = cell[0] * distance + distance / 2;
+        int z = cell[1] * distance + distance / 2;
+        if (!plugin.getDatabase().reserveCell(levelName, IslandManager.cellKey(x, z, distance))) {
+            return null;
+        }
+        return new Pair(x, z);
+    }
+
+    private int distance(String levelName) {
+        return plugin.getPlotSize(levelName);
+    }
+
+    /**
+     * The cell at this position of the spiral. Ring k holds the positions
+     * (2k-1)^2 to (2k+1)^2-1, it starts next to the east side of the
+     * previous ring and goes counterclockwise.
+     */
+    static int[] cell(long n) {
+        if (n == 0) {
+            return new int[]{0, 0};
+        }
+        long k = (long) Math.ceil((Math.sqrt(n + 1) - 1) / 2);
+        // Rounding of the square root at huge n
+        while ((2 * k - 1) * (2 * k - 1) > n) {
+            k--;
+        }
+        while ((2 * k + 1) * (2 * k + 1) <= n) {
+            k++;
+        }
+        long t = 2 * k;
+        long m = (t + 1) * (t + 1) - 1;
+        if (n >= m - t) {
+            return new int[]{(int) (k - (m - n)), (int) -k};
+        }
+        m -= t;
+        if (n >= m - t) {
+            return new int[]{(int) -k, (int) (-k + (m - n))};
+        }
+        m -= t;
+        if (n >= m - t) {
+            return new int[]{(int) (-k + (m - n)), (int) k};
+        }
+        return new int[]{(int) k, (int) (k - (m - n - t))};
+    }
+
+    /**
+     * The spiral position of a cell, the inverse of {@link #cell(long)}
+     */
+    static long index(int x, int z) {
+        long k = Math.max(Math.abs((long) x), Math.abs((long) z));
+        if (k == 0) {
+            return 0;
+        }
+        long t = 2 * k;
+        long m = (t + 1) * (t + 1) - 1;
+        if (z == -k) {
+            return m - (k - x);
+        }
+        if (x == -k) {
+            return m - t - (z + k);
+        }
+        if (z == k) {
+            return m - 2 * t - (x + k);
+        }
+        return m - 3 * t - (k - z);
+    }
+
+    private static final class Spiral {
+
+        // Next spiral position that has not been looked at
+        private long next = 0;
+        // Spiral positions behind next that were freed
+        private final ArrayDeque<Long> free = new ArrayDeque<>();
+    }
+}
@@ -31,6 +31,7 @@ import suomicraftpe.storage.IslandData;
 import suomicraftpe.storage.WorldSettings;
 import suomicraftpe.task.DeleteIslandTask;
 import suomicraftpe.task.TaskManager;
+import suomicraftpe.utils.Pair;
 import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
@@ -44,9 +45,15 @@ import java.util.Set;
 public class IslandManager {
 
     private final ASkyBlock plugin;
+    private final IslandAllocator allocator;
 
     public IslandManager(ASkyBlock plugin) {
         this.plugin = plugin;
+        this.allocator = new IslandAllocator(plugin);
+    }
+
+    public IslandAllocator getAllocator() {
+        return allocator;
     }
 
     public void handleIslandCommand(Player p, boolean reset) {
@@ -77,7 +84,7 @@ public class IslandManager {
             pOwner.sendMessage(plugin.getPrefix() + plugin.getLocale(pOwner).errorNotOnIsland);
             return;
         }
-        final int orgKey = generateIslandKey(loc);
+        final long orgKey = generateIslandKey(loc);
         final Player pVictim = Server.getInstance().getPlayer(victimName);
         if (pVictim == null || !pVictim.isOnline()) {
             pOwner.sendMessage(plugin.getPrefix() + plugin.getLocale(pOwner).errorOfflinePlayer);
@@ -94,7 +101,7 @@ public class IslandManager {
             return;
         }
         final Location locVict = pVictim.getLocation();
-        final int tgtKey = generateIslandKey(locVict);
+        final long tgtKey = generateIslandKey(locVict);
         if (tgtKey != orgKey) {
             pOwner.sendMessage(plugin.getPrefix() + plugin.getLocale(pOwner).errorOfflinePlayer);
             return;
@@ -116,11 +123,9 @@ public class IslandManager {
             return;
         }
         Location locVict = p.getLocation();
-        for (String lvl : plugin.getLevels()) {
-            if (!locVict.getLevel().getName().equalsIgnoreCase(lvl)) {
-                sender.sendMessage(plugin.getPrefix() + plugin.getLocale(kicker).errorOfflinePlayer.replace("[player]", arg));
-                return;
-            }
+        if (!plugin.level.contains(locVict.getLevel())) {
+            sender.sendMessage(plugin.getPrefix() + plugin.getLocale(kicker).errorOfflinePlayer.replace("[player]", arg));
+            return;
         }
         sender.sendMessage(plugin.getPrefix() + plugin.getLocale(kicker).kickSuccess.replace("[player]", arg));
         p.sendMessage(plugin.getPrefix() + plugin.getLocale(p).kickedFromAdmin);
@@ -144,7 +149,7 @@ public class IslandManager {
     }
 
     public boolean createIsland(Player p, int templateId, String home) {
-        return this.createIsland(p, templateId, home, plugin.getDefaultWorld(), false, Biome.getBiome(Biome.PLAINS));
+        return this.createIsland(p, templateId, plugin.getDefaultWorld(), home, false, Biome.getBiome(Biome.PLAINS));
     }
 
     public boolean createIsland(Player p, int templateId, String levelName, String home, boolean protection, Biome biome) {
@@ -162,78 +167,104 @@ public class IslandManager {
             }
         }
 
-        for (int i = 0; i < Integer.MAX_VALUE; ++i) {
-            int width = i * Settings.islandDistance * 2;
-            int wx = (int) (Math.random() * width);
-            int wz = (int) (Math.random() * width);
-            int wy = Settings.islandHieght;
-            wx = wx - wx % Settings.islandDistance + Settings.islandDistance / 2;
-            wz = wz - wz % Settings.islandDistance + Settings.islandDistance / 2;
-            IslandData pd = plugin.getDatabase().getIslandById(generateIslandKey(wx, wz));
-            if (pd == null) {
-                Level world = Server.getInstance().getLevelByName(levelName);
-                Location locIsland = new Location(wx, wy, wz, world);
-                pd = claim(p, locIsland, home, protection);
-                IslandCreateEvent event = new IslandCreateEvent(p, templateId, pd);
-                plugin.getServer().getPluginManager().callEvent(event);
-                if (event.isCancelled()) {
-                    p.sendMessage(plugin.getLocale(p).errorBlockedByAPI);
-                    return true;
-                }
+        // The cell stays reserved until the island is created or given back
+        Pair cell = allocator.allocate(levelName);
+        int wx = cell.getLeft();
+        int wz = cell.getRight();
+        int wy = Settings.islandHieght;
+        Level world = Server.getInstance().getLevelByName(levelName);
+        if (world == null || !checkIslandAt(world)) {
+            allocator.release(levelName, wx, wz);
+            p.sendMessage(plugin.getLocale(p).errorFailedCritical);
+            return false;
+        }
+        Location locIsland = new Location(wx, wy, wz, world);
+        IslandData pd = claim(p, locIsland, home, protection);
+        IslandCreateEvent event = new IslandCreateEvent(p, templateId, pd);
+        plugin.getServer().getPluginManager().callEvent(event);
+        if (event.isCancelled()) {
+            allocator.release(levelName, wx, wz);
+            p.sendMessage(plugin.getLocale(p).errorBlockedByAPI);
+            return true;
+        }
 
-                ASkyBlock.schematics.pasteSchematic(p, locIsland, templateId, biome);
-                boolean result = plugin.getDatabase().createIsland(pd);
-                if (result) {
-                    p.sendMessage(plugin.getLocale(p).createSuccess);
-                    plugin.getGrid().homeTeleport(p, 1, true);
-                    return true;
+        // The blocks are only pasted once the row exists, a failed insert
+        // leaves nothing behind for the next island of this cell
+        plugin.getDatabase().async().createIsland(pd)
+            .exceptionally(ex -> false)
+            .thenAcceptAsync(created -> {
+                if (created == Boolean.TRUE) {
+                    ASkyBlock.schematics.pasteSchematic(p, locIsland, templateId, biome);
+                    plugin.getTracker().invalidate();
+                    if (p.isOnline()) {
+                        p.sendMessage(plugin.getLocale(p).createSuccess);
+                        plugin.getGrid().homeTeleport(p, 1, true);
+                    }
                 } else {
-                    p.sendMessage(plugin.getLocale(p).errorFailedCritical);
-                    return false;
+                    allocator.release(levelName, wx, wz);
+                    if (p.isOnline()) {
+                        p.sendMessage(plugin.getLocale(p).errorFailedCritical);
+                    }
                 }
-            }
-        }
-        return false;
+            }, TaskManager.MAIN_THREAD);
+        return true;
     }
 
     private IslandData claim(Player p, Location loc, String home, boolean locked) {
         int x = loc.getFloorX();
         int z = loc.getFloorZ();
-        if (!checkIslandAt(loc.getLevel())) {
-            return null;
-        }
-
-        int iKey = generateIslandKey(loc);
+        String levelName = loc.getLevel().getName();
         List<IslandData> number = plugin.getDatabase().getIslands(p.getName());
-        IslandData pd = plugin.getDatabase().getIslandLocation(loc.getLevel().getName(), x, z);
+        IslandData pd = new IslandData(levelName, x, z, plugin.level.get(loc.getLevel()).getProtectionRange());
         pd.setId(number.size() + 1);
-        pd.setIslandId(iKey);
+        pd.setIslandId(generateIslandKey(loc));
         pd.setOwner(p.getName());
         pd.setCenter(x, loc.getFloorY(), z);
-        pd.setLevelName(loc.getLevel().getName());
         pd.setLocked(locked);
         pd.setBiome(Settings.defaultBiome.getName());
         pd.setName(home);
         return pd;
     }
 
-    public int generateIslandKey(Location loc) {
-        int x = loc.getFloorX();
-        int z = loc.getFloorZ();
-        return generateIslandKey(x, z);
+    public long generateIslandKey(Location loc) {
+        WorldSettings ws = plugin.level.get(loc.getLevel());
+        int distance = ws != null ? ws.getPlotSize() : Settings.islandDistance;
+        return cellKey(loc.getFloorX(), loc.getFloorZ(), distance);
+    }
+
+    public long generateIslandKey(String levelName, int x, int z) {
+        return cellKey(x, z, plugin.getPlotSize(levelName));
     }
 
-    public int generateIslandKey(int x, int z) {
-        return x / Settings.islandDistance + z / Settings.islandDistance * Integer.MAX_VALUE;
+    /**
+     * The grid cell of a block position, the cell x is in the high and the
+     * cell z in the low 32 bits. Rounds down so negative coordinates get
+     * their own cells too.
+     *
+     * @param distance The cell size of the world
+     * @return The island key of the cell
+     */
+    public static long cellKey(int x, int z, int distance) {
+        return cellKeyOf(Math.floorDiv(x, distance), Math.floorDiv(z, distance));
+    }
+
+    /**
+     * @param cellX The cell x, the block x divided by the cell size
+     * @param cellZ The cell z, the block z divided by the cell size
+     * @return The island key of the cell
+     */
+    public static long cellKeyOf(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
     }
 
     public boolean isPlayerIsland(Player p, Location loc) {
         for (WorldSettings ws : plugin.level) {
             if (ws.getLevel().getName().equals(p.getLevel().getName())) {
-                if (plugin.getIslandInfo(loc).getOwner() == null) {
+                IslandData island = plugin.getIslandInfo(loc);
+                if (island == null || island.getOwner() == null) {
                     return false;
                 }
-                return plugin.getIslandInfo(loc).getOwner().equalsIgnoreCase(p.getName());
+                return island.getOwner().equalsIgnoreCase(p.getName());
             }
         }
         return false;
@@ -261,7 +292,7 @@ public class IslandManager {
     }
 
     public boolean checkIslandAt(Level level) {
-        return plugin.getLevels().contains(level.getName());
+        return plugin.level.contains(level);
     }
 
     public boolean CanPlayerAccess(Player p, Location loc) {
@@ -282,16 +313,15 @@ public class IslandManager {
         if (pd.getOwner().equals(pName)) {
             return true;
         }
-        PlayerData pd2 = plugin.getPlayerInfo(p);
-        return pd2.members.contains(pName);
+        return pd.isMember(pName);
     }
 
     public IslandData GetIslandAt(Location loc) {
         if (!checkIslandAt(loc.getLevel())) {
             return null;
         }
-        int iKey = generateIslandKey(loc);
-        IslandData res = ASkyBlock.get().getDatabase().getIslandById(iKey);
+        // Keys of worlds with different cell sizes can be equal, so the world is part of the lookup
+        IslandData res = plugin.getDatabase().getIslandAt(loc.getLevel().getName(), loc.getFloorX(), loc.getFloorZ());
         if (res == null) {
             return null;
         }
@@ -343,7 +373,7 @@ public class IslandManager {
         Location local = new Location(loc.x, loc.y, loc.z, player.getLevel());
         IslandData island = GetIslandAt(local);
         if (island != null) {
-            return island.onIsland(local) || island.getMembers().contains(player.getName());
+            return island.onIsland(local) || island.isMember(player.getName());
         } else {
         }
         Set<Location> islandTestLocations = new HashSet<>();
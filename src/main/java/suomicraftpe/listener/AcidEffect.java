@@ -16,7 +16,6 @@
  */
 package suomicraftpe.listener;
 
-import suomicraftpe.storage.WorldSettings;
 import cn.nukkit.Player;
 import cn.nukkit.event.EventHandler;
 import cn.nukkit.event.EventPriority;
@@ -136,10 +135,8 @@ public class AcidEffect implements Listener {
     @EventHandler(priority = EventPriority.NORMAL)
     public void onWeatherChange(final WeatherChangeEvent e) {
         // Check that they are in the ASkyBlock world
-        for (WorldSettings ws : plugin.level) {
-            if (ws.getLevel().getName().equals(e.getLevel().getName())) {
-                this.isRaining = e.toWeatherState();
-            }
+        if (plugin.level.contains(e.getLevel())) {
+            this.isRaining = e.toWeatherState();
         }
     }
 }
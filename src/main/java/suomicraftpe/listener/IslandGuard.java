@@ -41,10 +41,8 @@ import cn.nukkit.utils.BlockIterator;
 import cn.nukkit.utils.MainLogger;
 import cn.nukkit.utils.TextFormat;
 import suomicraftpe.ASkyBlock;
-import suomicraftpe.events.IslandEnterEvent;
-import suomicraftpe.events.IslandExitEvent;
 import suomicraftpe.storage.IslandData;
-import suomicraftpe.storage.WorldSettings;
+import suomicraftpe.task.TaskManager;
 import suomicraftpe.utils.BlockUtil;
 import suomicraftpe.utils.Settings;
 
@@ -105,12 +103,7 @@ public class IslandGuard implements Listener {
      * @return true if in the island world
      */
     protected boolean inWorld(Location loc) {
-        for (WorldSettings ws : plugin.level) {
-            if (ws.getLevel().equals(loc.getLevel())) {
-                return true;
-            }
-        }
-        return false;
+        return plugin.level.contains(loc.getLevel());
     }
 
     /**
@@ -143,7 +136,7 @@ public class IslandGuard implements Listener {
         if (!island.isLocked()) { // Locked is now same as protected
             return true;
         }
-        return Settings.defaultWorldSettings.get(flag);
+        return flag.isSet(Settings.defaultWorldFlags);
     }
 
     /**
@@ -158,8 +151,8 @@ public class IslandGuard implements Listener {
         if (island != null && island.getIgsFlag(flag)) {
             return true;
         }
-        // Sometimes this can be null (So default is false)
-        return Settings.defaultWorldSettings.get(flag) == null ? false : Settings.defaultWorldSettings.get(flag);
+        // Flags missing from the config are off
+        return flag.isSet(Settings.defaultWorldFlags);
     }
 
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
@@ -192,83 +185,30 @@ public class IslandGuard implements Listener {
          * islandTo == islandFrom
          */
 
+        IslandTracker tracker = plugin.getTracker();
         if (islandTo != null && (islandTo.getOwner() != null || islandTo.isSpawn())) {
             // Lock check
-            if (islandTo.isLocked()) {//|| plugin.getPlayers().isBanned(islandTo.getOwner(), player)) {
-                if (!islandTo.getMembers().contains(player.getName()) && !player.isOp()
-                    && !player.hasPermission("is.mod.bypassprotect")
-                    && !player.hasPermission("is.mod.bypasslock")) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.RED + "This island is protected");
-
-                    // Get the vector away from this island
-                    Vector3 v = e.getVehicle().subtract(islandTo.getCenter()).normalize();
-                    v.x *= 1.2;
-                    v.z *= 1.2;
-                    e.getVehicle().setMotion(v);
-                    return;
-                }
+            if (tracker.isLockedFor(player, islandTo)) {
+                tracker.sendLocked(player);
+
+                // Get the vector away from this island
+                Vector3 v = e.getVehicle().subtract(islandTo.getCenter()).normalize();
+                v.x *= 1.2;
+                v.z *= 1.2;
+                e.getVehicle().setMotion(v);
+                return;
             }
         }
         if (islandTo != null && islandFrom == null && (islandTo.getOwner() != null || islandTo.isSpawn())) {
             // Entering
-            if (islandTo.isLocked()) {
-                player.sendMessage(plugin.getPrefix() + TextFormat.RED + "This island is protected");
-            }
-            if (islandTo.isSpawn()) {
-                if (islandTo.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Entering spawn area");
-                }
-            } else {
-                if (islandTo.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Entering " + islandTo.getName() + "'s island");
-                }
-            }
-            // Fire entry event
-            final IslandEnterEvent event = new IslandEnterEvent(player, islandTo, e.getTo());
-            plugin.getServer().getPluginManager().callEvent(event);
+            tracker.enter(player, islandTo, e.getTo());
         } else if (islandTo == null && islandFrom != null && (islandFrom.getOwner() != null || islandFrom.isSpawn())) {
             // Leaving
-            if (islandFrom.isSpawn()) {
-                // Leaving
-                if (islandFrom.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Leaving spawn area");
-                }
-
-            } else {
-                if (islandFrom.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Leaving " + islandFrom.getName() + "'s island");
-                }
-            }
-            // Fire exit event
-            final IslandExitEvent event = new IslandExitEvent(player, islandFrom, e.getFrom());
-            plugin.getServer().getPluginManager().callEvent(event);
+            tracker.leave(player, islandFrom, e.getFrom());
         } else if (islandTo != null && islandFrom != null && !islandTo.equals(islandFrom)) {
             // Adjacent islands or overlapping protections
-            if (islandFrom.isSpawn()) {
-                // Leaving
-                if (islandFrom.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Leaving spawn area");
-                }
-            } else if (islandFrom.getOwner() != null) {
-                if (islandFrom.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Leaving " + islandFrom.getName() + "'s island");
-                }
-            }
-            if (islandTo.isSpawn()) {
-                if (islandTo.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Entering spawn area");
-                }
-            } else if (islandTo.getOwner() != null) {
-                if (islandTo.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
-                    player.sendMessage(plugin.getPrefix() + TextFormat.GREEN + "Entering " + islandTo.getName() + "'s island");
-                }
-            }
-            // Fire exit event
-            final IslandExitEvent event = new IslandExitEvent(player, islandFrom, e.getFrom());
-            plugin.getServer().getPluginManager().callEvent(event);
-            // Fire entry event
-            final IslandEnterEvent event2 = new IslandEnterEvent(player, islandTo, e.getTo());
-            plugin.getServer().getPluginManager().callEvent(event2);
+            tracker.leave(player, islandFrom, e.getFrom());
+            tracker.enter(player, islandTo, e.getTo());
         }
     }
 
@@ -316,21 +256,9 @@ public class IslandGuard implements Listener {
                     if (lastBlock.equals(e.getBlock())) {
                         break;
                     }
-                    if (lastBlock.getId() == Block.FIRE) {
-                        if (island != null) {
-                            if (!island.getIgsFlag(IslandData.SettingsFlag.FIRE_EXTINGUISH)) {
-                                p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                                e.setCancelled(true);
-                                return;
-                            }
-                        } else {
-                            if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.FIRE_EXTINGUISH)) {
-                            } else {
-                                p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                                e.setCancelled(true);
-                                return;
-                            }
-                        }
+                    if (lastBlock.getId() == Block.FIRE && !isAllowed(island, IslandData.SettingsFlag.FIRE_EXTINGUISH)) {
+                        deny(e);
+                        return;
                     }
                 }
             } catch (Exception ex) {
@@ -338,355 +266,47 @@ public class IslandGuard implements Listener {
                 deb.debug("DEBUG: block iterator error");
                 ex.printStackTrace();
             }
-            // Handle Shulker Boxes
-            if (e.getBlock().getName().contains("SHULKER_BOX")) {
-                if (island == null) {
-                    if (!Settings.defaultWorldSettings.get(IslandData.SettingsFlag.CHEST)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                    }
-                } else if (!island.getIgsFlag(IslandData.SettingsFlag.CHEST)) {
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
-                }
-                return;
-            }
             // Handle fireworks
             if (e.getItem() != null && e.getItem().getId() == Item.FIRE_CHARGE) {
-                if (island == null) {
-                    if (!Settings.defaultWorldSettings.get(IslandData.SettingsFlag.PLACE_BLOCKS)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                    }
-                } else if (!island.getIgsFlag(IslandData.SettingsFlag.PLACE_BLOCKS)) {
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
+                if (!isAllowed(island, IslandData.SettingsFlag.PLACE_BLOCKS)) {
+                    deny(e);
                 }
                 return;
             }
-
-            switch (e.getBlock().getId()) {
-                case WOODEN_DOOR:
-                case SPRUCE_DOOR:
-                case ACACIA_DOOR:
-                case DARK_OAK_DOOR:
-                case BIRCH_DOOR:
-                case JUNGLE_DOOR:
-                case TRAPDOOR:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.DOOR)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.DOOR)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case FENCE_GATE:
-                case FENCE_GATE_SPRUCE:
-                case FENCE_GATE_ACACIA:
-                case FENCE_GATE_DARK_OAK:
-                case FENCE_GATE_BIRCH:
-                case FENCE_GATE_JUNGLE:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.GATE)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.GATE)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case ENDER_CHEST:
-                    break;
-                case CHEST:
-                case TRAPPED_CHEST:
-                case DISPENSER:
-                case DROPPER:
-                case HOPPER:
-                case MINECART_WITH_HOPPER:
-                case MINECART_WITH_CHEST:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.CHEST)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.CHEST)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case GRASS:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.CROP_TRAMPLE)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.CROP_TRAMPLE)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case BREWING_STAND:
-                case CAULDRON:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.BREWING)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.BREWING)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case REDSTONE:
-                case REPEATER:
-                case UNPOWERED_REPEATER:
-                case COMPARATOR:
-                case DAYLIGHT_DETECTOR:
-                case DAYLIGHT_DETECTOR_INVERTED:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.REDSTONE)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.REDSTONE)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case ENCHANTMENT_TABLE:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.ENCHANTING)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.ENCHANTING)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case FURNACE:
-                case BURNING_FURNACE:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.FURNACE)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.FURNACE)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case ICE:
-                    break;
-                case ITEM_FRAME:
-                    break;
-                case NOTEBLOCK:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.MUSIC)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.MUSIC)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case PACKED_ICE:
-                    break;
-                case STONE_BUTTON:
-                case WOODEN_BUTTON:
-                case LEVER:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.LEVER_BUTTON)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.LEVER_BUTTON)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case TNT:
-                    break;
-                case WORKBENCH:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.CRAFTING)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.CRAFTING)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case ANVIL:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.ANVIL)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.ANVIL)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
+            int id = e.getBlock().getId();
+            IslandData.SettingsFlag[] table = Settings.interactFlags;
+            IslandData.SettingsFlag flag = id < table.length ? table[id] : null;
+            if (flag != null) {
+                if (!isAllowed(island, flag)) {
+                    if (id == CAKE_BLOCK) {
+                        e.getPlayer().getFoodData().setLevel(e.getPlayer().getFoodData().getLevel() - 2);
                     }
-                    break;
+                    deny(e);
+                    return;
+                }
+                if (island == null) {
+                    // The world allows it, the item in hand is not checked
+                    return;
+                }
+            }
+            switch (id) {
                 case RAIL:
                 case POWERED_RAIL:
                 case DETECTOR_RAIL:
                 case ACTIVATOR_RAIL:
-                    // If they are not on an island, it's protected
-                    if (island == null) {
-                        if (!Settings.defaultWorldSettings.get(IslandData.SettingsFlag.PLACE_BLOCKS)) {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                        }
-                        return;
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.PLACE_BLOCKS)) {
-                        if (e.getItem().getId() == MINECART || e.getItem().getId() == MINECART_WITH_CHEST || e.getItem().getId() == MINECART_WITH_HOPPER
-                            || e.getItem().getId() == MINECART_WITH_TNT) {
-                            e.setCancelled(true);
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            return;
-                        }
-                    }
-                case BEACON:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.BEACON)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.BEACON)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case CAKE_BLOCK:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.BREAK_BLOCKS)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.getPlayer().getFoodData().setLevel(e.getPlayer().getFoodData().getLevel() - 2);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.BREAK_BLOCKS)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.getPlayer().getFoodData().setLevel(e.getPlayer().getFoodData().getLevel() - 2);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case DRAGON_EGG:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.BREAK_BLOCKS)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.BREAK_BLOCKS)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
-                        return;
-                    }
-                    break;
-                case MONSTER_SPAWNER:
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.BREAK_BLOCKS)) {
-                            return;
-                        } else {
-                            p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                            e.setCancelled(true);
-                            return;
-                        }
-                    }
-                    if (!island.getIgsFlag(IslandData.SettingsFlag.BREAK_BLOCKS)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
+                    // Placing a minecart
+                    if (e.getItem() != null && isMinecart(e.getItem().getId()) && !isAllowed(island, IslandData.SettingsFlag.PLACE_BLOCKS)) {
+                        deny(e);
                         return;
                     }
                     break;
                 case BED_BLOCK:
                     if (e.getPlayer().getLevel().getDimension() == Level.DIMENSION_NETHER) {
                         // Prevent explosions
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
+                        deny(e);
                         return;
                     }
+                    break;
                 default:
                     break;
             }
@@ -699,61 +319,61 @@ public class IslandGuard implements Listener {
                 || e.getItem().getId() == CHEST
                 || e.getItem().getId() == TRAPPED_CHEST
                 || e.getItem().getId() == IRON_DOOR) {
-                if ((island == null && Settings.defaultWorldSettings.get(IslandData.SettingsFlag.PLACE_BLOCKS))
-                    || (island != null && !island.getIgsFlag(IslandData.SettingsFlag.PLACE_BLOCKS))) {
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
+                if (!isAllowed(island, IslandData.SettingsFlag.PLACE_BLOCKS)) {
+                    deny(e);
                 }
             } else if (e.getItem().getName().contains("BOAT") && (e.getBlock() != null && !BlockUtil.isFluid(e.getBlock()))) {
                 // Trying to put a boat on non-liquid
-                if ((island == null && Settings.defaultWorldSettings.get(IslandData.SettingsFlag.PLACE_BLOCKS))
-                    || (island != null && !island.getIgsFlag(IslandData.SettingsFlag.PLACE_BLOCKS))) {
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
+                if (!isAllowed(island, IslandData.SettingsFlag.PLACE_BLOCKS)) {
+                    deny(e);
                 }
             } else if (e.getItem().getId() == ENDER_PEARL) {
-                if ((island == null && Settings.defaultWorldSettings.get(IslandData.SettingsFlag.ENDER_PEARL))
-                    || (island != null && !island.getIgsFlag(IslandData.SettingsFlag.ENDER_PEARL))) {
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
+                if (!isAllowed(island, IslandData.SettingsFlag.ENDER_PEARL)) {
+                    deny(e);
                 }
             } else if (e.getItem().getId() == FLINT_AND_STEEL) {
                 deb.debug("DEBUG: flint & steel");
                 if (e.getBlock() != null) {
-                    if (e.getItem().getId() == OBSIDIAN) {
-                        deb.debug("DEBUG: flint & steel on obsidian");
-                        //return;
-                    }
                     if (!actionAllowed(e.getPlayer(), e.getBlock().getLocation(), IslandData.SettingsFlag.FIRE)) {
-                        p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                        e.setCancelled(true);
+                        deny(e);
                     }
                 }
             } else if (e.getItem().getId() == MONSTER_EGG) {
                 if (!actionAllowed(e.getPlayer(), e.getBlock().getLocation(), IslandData.SettingsFlag.SPAWN_EGGS)) {
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
+                    deny(e);
                 }
             } else if (e.getItem().getId() == SPLASH_POTION) {
                 // Potion
                 deb.debug("DEBUG: potion");
-                try {
-                    // Check PVP
-                    if (island == null) {
-                        if (Settings.defaultWorldSettings.get(IslandData.SettingsFlag.PVP)) {
-                            return;
-                        }
-                    }
-                    // Not allowed
-                    p.sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
-                    e.setCancelled(true);
-                } catch (Exception ex) {
+                // Only allowed outside of islands, when the world allows PVP
+                if (island != null || !IslandData.SettingsFlag.PVP.isSet(Settings.defaultWorldFlags)) {
+                    deny(e);
                 }
             }
             // Everything else is okay
         }
     }
 
+    /**
+     * Checks a flag of the island, or of the world if there is no island
+     *
+     * @param island The island, or null
+     * @param flag   The flag
+     * @return true if allowed
+     */
+    private boolean isAllowed(IslandData island, IslandData.SettingsFlag flag) {
+        return island != null ? island.getIgsFlag(flag) : flag.isSet(Settings.defaultWorldFlags);
+    }
+
+    private boolean isMinecart(int id) {
+        return id == MINECART || id == MINECART_WITH_CHEST || id == MINECART_WITH_HOPPER || id == MINECART_WITH_TNT;
+    }
+
+    private void deny(PlayerInteractEvent e) {
+        e.getPlayer().sendMessage(plugin.getPrefix() + plugin.getLocale(e.getPlayer()).islandProtected);
+        e.setCancelled(true);
+    }
+
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onExplosion(final EntityExplodeEvent e) {
         try {
@@ -1254,10 +874,18 @@ public class IslandGuard implements Listener {
         e.setCancelled(true);
     }
 
-    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerLogin(PlayerPreLoginEvent ex) {
-        Player p = ex.getPlayer();
-        plugin.getIslandInfo(p); // laod the player islands
+        // Load the player off the main thread, islands are always in memory
+        plugin.getDatabase().openSession(ex.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginCancelled(PlayerLoginEvent ex) {
+        // No quit event follows a refused login, drop the session here
+        if (ex.isCancelled()) {
+            plugin.getDatabase().closeSession(ex.getPlayer().getName());
+        }
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
@@ -1265,9 +893,18 @@ public class IslandGuard implements Listener {
         // load player inventory if exsits
         Player p = ex.getPlayer();
         plugin.getInventory().loadPlayerInventory(p);
-        // Load player datatatatata tadaaaa
-        if (plugin.getPlayerInfo(p) == null) {
-            plugin.getDatabase().createPlayer(p.getName());
-        }
+        // Waits for the pre-login load if it is still running, a load that
+        // failed is tried again and creates the player if it is new
+        plugin.getDatabase().openSession(p.getName()).thenAcceptAsync(pd -> {
+            if (pd == null) {
+                deb.error("Could not load or create the player data of " + p.getName());
+            }
+        }, TaskManager.MAIN_THREAD);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent ex) {
+        // Write the player changes that are still in the save window
+        plugin.getDatabase().closeSession(ex.getPlayer().getName());
     }
 }
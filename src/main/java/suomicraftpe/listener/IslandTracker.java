@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.listener;
+
+import cn.nukkit.Player;
+import cn.nukkit.event.EventHandler;
+import cn.nukkit.event.EventPriority;
+import cn.nukkit.event.Listener;
+import cn.nukkit.event.player.PlayerJoinEvent;
+import cn.nukkit.event.player.PlayerMoveEvent;
+import cn.nukkit.event.player.PlayerQuitEvent;
+import cn.nukkit.event.player.PlayerTeleportEvent;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.Location;
+import suomicraftpe.ASkyBlock;
+import suomicraftpe.events.IslandEnterEvent;
+import suomicraftpe.events.IslandExitEvent;
+import suomicraftpe.locales.ASlocales;
+import suomicraftpe.storage.IslandData;
+import suomicraftpe.storage.WorldSettings;
+
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Keeps track of the island every online player is standing on. A move
+ * that stays on the same block column costs one map lookup, the island
+ * is only looked up again when the player walks into another grid cell,
+ * and inside a cell only the protection bounds are compared.
+ * <p>
+ * Entering and leaving islands is announced here for players on foot and
+ * in vehicles, and players are kept out of locked islands, also when they
+ * teleport.
+ *
+ * @author Adam Matthew
+ */
+public class IslandTracker implements Listener {
+
+    private final ASkyBlock plugin;
+    private final HashMap<UUID, Track> tracks = new HashMap<>();
+
+    public IslandTracker(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Forget the cached cells, called when an island is created or
+     * deleted. The current islands are kept so nobody gets announced
+     * again, the next move of each player just looks the cell up again.
+     */
+    public void invalidate() {
+        for (Track track : tracks.values()) {
+            track.level = null;
+        }
+    }
+
+    /**
+     * Get the island a player is standing on
+     *
+     * @param player The player
+     * @return The island, null if the player is outside every protection range
+     */
+    public IslandData getCurrentIsland(Player player) {
+        Track track = tracks.get(player.getUniqueId());
+        return track != null ? track.current : null;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent e) {
+        Player player = e.getPlayer();
+        Track track = new Track();
+        Location loc = player.getLocation();
+        track.current = track.locate(loc.getLevel(), loc.getFloorX(), loc.getFloorZ());
+        tracks.put(player.getUniqueId(), track);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent e) {
+        tracks.remove(e.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent e) {
+        Track track = tracks.get(e.getPlayer().getUniqueId());
+        if (track == null) {
+            return;
+        }
+        Location to = e.getTo();
+        int x = to.getFloorX();
+        int z = to.getFloorZ();
+        if (x == track.x && z == track.z && to.getLevel() == track.level) {
+            return;
+        }
+        Player player = e.getPlayer();
+        IslandData from = track.current;
+        IslandData island = track.locate(to.getLevel(), x, z);
+        if (island == from) {
+            return;
+        }
+        if (player.riding != null) {
+            // Vehicles announce on their own
+            track.current = island;
+            return;
+        }
+        if (isLockedFor(player, island)) {
+            long now = System.currentTimeMillis();
+            if (now - track.warned > 1000) {
+                track.warned = now;
+                sendLocked(player);
+            }
+            // Stay in the old position, the next move has to be checked again
+            track.level = null;
+            e.setCancelled();
+            return;
+        }
+        track.current = island;
+        changeIsland(player, from, island, e.getFrom(), to);
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerTeleportLocked(PlayerTeleportEvent e) {
+        Location to = e.getTo();
+        if (!plugin.level.contains(to.getLevel())) {
+            return;
+        }
+        IslandData island = plugin.getDatabase().getIslandAt(to.getLevel().getName(), to.getFloorX(), to.getFloorZ());
+        if (island != null && island.onIsland(to.getFloorX(), to.getFloorZ()) && isLockedFor(e.getPlayer(), island)) {
+            sendLocked(e.getPlayer());
+            e.setCancelled();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent e) {
+        Track track = tracks.get(e.getPlayer().getUniqueId());
+        if (track == null) {
+            return;
+        }
+        Location to = e.getTo();
+        IslandData from = track.current;
+        IslandData island = track.locate(to.getLevel(), to.getFloorX(), to.getFloorZ());
+        if (island != from) {
+            track.current = island;
+            changeIsland(e.getPlayer(), from, island, e.getFrom(), to);
+        }
+    }
+
+    /**
+     * Checks if an island is locked and this player may not come in
+     *
+     * @param player The player
+     * @param island The island, may be null
+     * @return true if the player has to be kept out
+     */
+    public boolean isLockedFor(Player player, IslandData island) {
+        return island != null && island.isLocked()
+            && !island.isMember(player.getName()) && !player.isOp()
+            && !player.hasPermission("is.mod.bypassprotect")
+            && !player.hasPermission("is.mod.bypasslock");
+    }
+
+    public void sendLocked(Player player) {
+        player.sendMessage(plugin.getPrefix() + plugin.getLocale(player).islandLocked);
+    }
+
+    /**
+     * Announces that a player left an island, on foot or in a vehicle
+     *
+     * @param player The player
+     * @param island The island that was left
+     * @param from   Where the player was
+     */
+    public void leave(Player player, IslandData island, Location from) {
+        if (island.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
+            ASlocales locale = plugin.getLocale(player);
+            String message = island.isSpawn() ? locale.spawnLeave : locale.islandLeave.replace("[name]", island.getName());
+            player.sendMessage(plugin.getPrefix() + message);
+        }
+        plugin.getServer().getPluginManager().callEvent(new IslandExitEvent(player, island, from));
+    }
+
+    /**
+     * Announces that a player came onto an island, on foot or in a vehicle
+     *
+     * @param player The player
+     * @param island The island that was entered
+     * @param to     Where the player is now
+     */
+    public void enter(Player player, IslandData island, Location to) {
+        if (island.isLocked()) {
+            sendLocked(player);
+        }
+        if (island.getIgsFlag(IslandData.SettingsFlag.ENTER_EXIT_MESSAGES)) {
+            ASlocales locale = plugin.getLocale(player);
+            String message = island.isSpawn() ? locale.spawnEnter : locale.islandEnter.replace("[name]", island.getName());
+            player.sendMessage(plugin.getPrefix() + message);
+        }
+        plugin.getServer().getPluginManager().callEvent(new IslandEnterEvent(player, island, to));
+    }
+
+    private void changeIsland(Player player, IslandData from, IslandData to, Location fromLoc, Location toLoc) {
+        if (from != null) {
+            leave(player, from, fromLoc);
+        }
+        if (to != null) {
+            enter(player, to, toLoc);
+        }
+    }
+
+    /**
+     * What is known about the position of one player
+     */
+    private final class Track {
+
+        // Last block column, level is null when the cell has to be looked up again
+        private Level level;
+        private int x;
+        private int z;
+        // Null outside of the island worlds
+        private WorldSettings world;
+        private long cell;
+        // The claimed island of the cell, null if the cell is unclaimed
+        private IslandData cellIsland;
+        // The island the player is on
+        private IslandData current;
+        private long warned;
+
+        private IslandData locate(Level target, int x, int z) {
+            if (target != level) {
+                world = plugin.level.get(target);
+                cell = world != null ? world.cellKey(x, z) : 0;
+                cellIsland = world != null ? lookup(target, x, z) : null;
+            } else if (world != null) {
+                long key = world.cellKey(x, z);
+                if (key != cell) {
+                    cell = key;
+                    cellIsland = lookup(target, x, z);
+                }
+            }
+            level = target;
+            this.x = x;
+            this.z = z;
+            return cellIsland != null && cellIsland.onIsland(x, z) ? cellIsland : null;
+        }
+
+        private IslandData lookup(Level target, int x, int z) {
+            IslandData island = plugin.getDatabase().getIslandAt(target.getName(), x, z);
+            if (island == null || (island.getOwner() == null && !island.isSpawn())) {
+                return null;
+            }
+            return island;
+        }
+    }
+}
@@ -47,6 +47,9 @@ public final class ASlocales {
     public String adminHelpRename = "§aAttempt to rename other player's island.";
     public String adminHelpSpawn = "§aSet the island's spawn point!";
     public String adminHelpDelete = "§aDelete other player island";
+    public String adminHelpDbStats = "§aShow database query statistics";
+    public String adminHelpMigrate = "§aCopy the database to another backend";
+    public String adminHelpNear = "§aList the islands around you";
     // Errors defaults
     public String errorUnknownPlayer = "§cThat player is unknown.";
     public String errorNoPermission = "§cYou don't have permission to use that command!";
@@ -92,6 +95,21 @@ public final class ASlocales {
     public String adminDeleteIslandnoid = "§cCannot identify island.";
     public String adminDeleteIslandUse = "§rUse §ldelete [name] §r§cto delete the player instead.";
     public String adminSetSpawnOwnedBy = "§cThis island space is owned by [name]";
+    public String adminDbStatsHeader = "§e--- §eDatabase statistics §e---";
+    public String adminDbStatsNone = "§7No queries recorded yet";
+    public String adminDbStatsLookups = "§eProtection lookups§7: §a[claimed] §7claimed, §a[unclaimed] §7unclaimed";
+    public String adminMigrateUsage = "§aUsage: /[com] migrate <mysql|sqlite|stop>";
+    public String adminMigrateNotRunning = "§cNo database migration is running";
+    public String adminMigrateStopping = "§eThe database migration stops after the current batch";
+    public String adminMigrateBadTarget = "§cThe database can only be migrated to mysql or sqlite";
+    public String adminMigrateSameSource = "§cThe server is using [source], it can not be migrated to [target]";
+    public String adminMigrateRunning = "§cA database migration is already running";
+    public String adminMigrateStarted = "§eMigrating the database from [source] to [target], the progress is shown in the console";
+    public String adminNearUsage = "§aUsage: /[com] near <radius>";
+    public String adminNearHeader = "§e--- §eIslands within §a[radius] §eblocks §e---";
+    public String adminNearNone = "§7No islands found";
+    public String adminNearIsland = "§a[owner] §7- §e[name] §7at §a[x], [z] §7([distance] blocks)";
+    public String adminNearSpawn = "Spawn";
     // Team messages
     public String teamChatStatusOff = "§aTeam chat is off";
     public String teamChatStatusOn = "§aTeam chat is on";
@@ -114,6 +132,11 @@ public final class ASlocales {
     public String groundNoAir = "§eWhat do you think you are? You can't set home on air!";
     // Guard island
     public String islandProtected = "§cThis area is protected";
+    public String islandLocked = "§cThis island is protected";
+    public String islandEnter = "§aEntering [name]'s island";
+    public String islandLeave = "§aLeaving [name]'s island";
+    public String spawnEnter = "§aEntering spawn area";
+    public String spawnLeave = "§aLeaving spawn area";
     // Panels
     public String panelIslandHeader = "§eWelcome to the Island Panel. Please fill in these forms.";
     public String panelIslandHome = "§dYour Home Name";
@@ -34,7 +34,7 @@ import suomicraftpe.ASkyBlock;
 import suomicraftpe.locales.ASlocales;
 import suomicraftpe.schematic.SchematicHandler;
 import suomicraftpe.storage.IslandData;
-import suomicraftpe.storage.WorldSettings;
+import suomicraftpe.task.TaskManager;
 import suomicraftpe.utils.Settings;
 
 import java.util.ArrayList;
@@ -153,7 +153,11 @@ public class Panel implements Listener {
                 FormResponseSimple firstSettingResponse = firstSettingPanel.getResponse();
 
                 int islandId = firstSettingResponse.getClickedButtonId();
-                addSettingFormOverlay(p, plugin.getDatabase().getIsland(p.getName(), islandId));
+                plugin.getDatabase().async().getIsland(p.getName(), islandId).thenAcceptAsync(pd -> {
+                    if (p.isOnline() && pd != null) {
+                        addSettingFormOverlay(p, pd);
+                    }
+                }, TaskManager.MAIN_THREAD);
                 break;
             case SECOND_TIME_SETTING:
                 // Check if the player closed this form
@@ -183,6 +187,7 @@ public class Panel implements Listener {
                 if (!pd.getName().equalsIgnoreCase(nameIsland)) {
                     pd.setName(nameIsland);
                 }
+                plugin.getDatabase().async().saveIsland(pd);
                 break;
             case FIRST_TIME_DELETE:
                 // Check if the player closed this form
@@ -236,11 +241,19 @@ public class Panel implements Listener {
     }
 
     public void addIslandFormOverlay(Player player) {
+        plugin.getDatabase().async().getIslands(player.getName()).thenAcceptAsync(islands -> {
+            if (player.isOnline()) {
+                showIslandForm(player, islands);
+            }
+        }, TaskManager.MAIN_THREAD);
+    }
+
+    private void showIslandForm(Player player, List<IslandData> islands) {
         // First check the availability for worlds
         ArrayList<String> worldName = new ArrayList<>();
         for (String level : plugin.getLevels()) {
-            List<IslandData> maxPlotsOfPlayers = plugin.getDatabase().getIslands(player.getName(), level);
-            if (!maxPlotsOfPlayers.isEmpty() || Settings.maxHome >= 0 && maxPlotsOfPlayers.size() >= Settings.maxHome) {
+            long maxPlotsOfPlayers = islands.stream().filter(pd -> level.equals(pd.getLevelName())).count();
+            if (maxPlotsOfPlayers > 0 || Settings.maxHome >= 0 && maxPlotsOfPlayers >= Settings.maxHome) {
             } else {
                 worldName.add(level);
             }
@@ -248,19 +261,14 @@ public class Panel implements Listener {
 
         // Second. Check the player permission
         // Have no permission to create island at this location
-        for (String level : worldName) {
-            WorldSettings settings = plugin.getSettings(level);
-            if (!player.hasPermission(settings.getPermission())) {
-                worldName.remove(level);
-            }
-        }
+        worldName.removeIf(level -> !player.hasPermission(plugin.getSettings(level).getPermission()));
 
         if (worldName.isEmpty()) {
             player.sendMessage(plugin.getPrefix() + plugin.getLocale(player).errorMaxIsland.replace("[maxplot]", "" + Settings.maxHome));
             return;
         }
 
-        int homes = plugin.getDatabase().getIslands(player.getName()).size();
+        int homes = islands.size();
         FormWindowCustom panelIsland = new FormWindowCustom("Island Menu");
 
         panelIsland.addElement(new ElementLabel(getLocale(player).panelIslandHeader));
@@ -279,8 +287,14 @@ public class Panel implements Listener {
     }
 
     public void addHomeFormOverlay(Player p) {
-        ArrayList<IslandData> listHome = plugin.getDatabase().getIslands(p.getName());
+        plugin.getDatabase().async().getIslands(p.getName()).thenAcceptAsync(listHome -> {
+            if (p.isOnline()) {
+                showHomeForm(p, listHome);
+            }
+        }, TaskManager.MAIN_THREAD);
+    }
 
+    public void showHomeForm(Player p, List<IslandData> listHome) {
         FormWindowSimple islandHome = new FormWindowSimple("Home list", getLocale(p).panelHomeHeader.replace("[function]", "teleport"));
         for (IslandData pd : listHome) {
             islandHome.addButton(new ElementButton(pd.getName()));
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.player;
+
+import suomicraftpe.ASkyBlock;
+import suomicraftpe.storage.IslandData;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Team members of every island owner, and the reverse, the owners whose
+ * islands a player can build on. Names are looked up in any case and
+ * handed out as they were written.
+ * <p>
+ * The teams handed out never change, a change to a team replaces it and
+ * gives the new one to each island of the owner, so islands can keep
+ * theirs and access checks are a single lookup.
+ *
+ * @author Adam Matthew
+ */
+public final class MemberIndex {
+
+    private final ASkyBlock plugin;
+    // owner -> members
+    private final HashMap<String, Team> members = new HashMap<>();
+    // member -> owners
+    private final HashMap<String, Team> teams = new HashMap<>();
+
+    public MemberIndex(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    public static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Replaces the whole index, done once when the database is opened
+     *
+     * @param lists Team members of every owner that has any
+     */
+    public synchronized void load(Map<String, ? extends Collection<String>> lists) {
+        members.clear();
+        teams.clear();
+        for (Map.Entry<String, ? extends Collection<String>> entry : lists.entrySet()) {
+            String owner = entry.getKey();
+            Team team = Team.EMPTY;
+            for (String member : entry.getValue()) {
+                if (!member.isEmpty()) {
+                    team = team.with(member);
+                }
+            }
+            if (team.isEmpty()) {
+                continue;
+            }
+            members.put(normalize(owner), team);
+            for (String member : team.getNames()) {
+                String key = normalize(member);
+                teams.put(key, teams.getOrDefault(key, Team.EMPTY).with(owner));
+            }
+        }
+    }
+
+    /**
+     * @param owner The island owner
+     * @return The team members of the owner, never null
+     */
+    public synchronized Team getMembers(String owner) {
+        if (owner == null) {
+            return Team.EMPTY;
+        }
+        return members.getOrDefault(normalize(owner), Team.EMPTY);
+    }
+
+    /**
+     * @param player The player
+     * @return The owners whose islands the player is a member of, never null
+     */
+    public synchronized Team getTeams(String player) {
+        return teams.getOrDefault(normalize(player), Team.EMPTY);
+    }
+
+    /**
+     * Adds a member to the team of an owner
+     *
+     * @param owner  The island owner
+     * @param member The new member
+     * @return false if the player was in the team already
+     */
+    public boolean addMember(String owner, String member) {
+        Team team;
+        synchronized (this) {
+            String key = normalize(owner);
+            Team before = members.getOrDefault(key, Team.EMPTY);
+            if (before.contains(member)) {
+                return false;
+            }
+            team = before.with(member);
+            members.put(key, team);
+            String name = normalize(member);
+            teams.put(name, teams.getOrDefault(name, Team.EMPTY).with(owner));
+        }
+        update(owner, team);
+        return true;
+    }
+
+    /**
+     * Removes a member from the team of an owner
+     *
+     * @param owner  The island owner
+     * @param member The member
+     * @return false if the player was not in the team
+     */
+    public boolean removeMember(String owner, String member) {
+        Team team;
+        synchronized (this) {
+            String key = normalize(owner);
+            Team before = members.getOrDefault(key, Team.EMPTY);
+            if (!before.contains(member)) {
+                return false;
+            }
+            team = without(members, key, member);
+            without(teams, normalize(member), owner);
+        }
+        update(owner, team);
+        return true;
+    }
+
+    private void update(String owner, Team team) {
+        for (IslandData island : plugin.getDatabase().getIslands(owner)) {
+            island.setMembers(team);
+        }
+    }
+
+    private static Team without(HashMap<String, Team> map, String key, String name) {
+        Team team = map.getOrDefault(key, Team.EMPTY).without(name);
+        if (team.isEmpty()) {
+            map.remove(key);
+        } else {
+            map.put(key, team);
+        }
+        return team;
+    }
+
+    /**
+     * An immutable set of player names, compared without case
+     */
+    public static final class Team {
+
+        public static final Team EMPTY = new Team(new LinkedHashMap<>());
+
+        // lower case -> as written
+        private final LinkedHashMap<String, String> names;
+        private final Set<String> view;
+
+        private Team(LinkedHashMap<String, String> names) {
+            this.names = names;
+            this.view = Collections.unmodifiableSet(new LinkedHashSet<>(names.values()));
+        }
+
+        public boolean contains(String name) {
+            return name != null && names.containsKey(normalize(name));
+        }
+
+        /**
+         * @return The names as they were written, the set never changes
+         */
+        public Set<String> getNames() {
+            return view;
+        }
+
+        public boolean isEmpty() {
+            return names.isEmpty();
+        }
+
+        private Team with(String name) {
+            LinkedHashMap<String, String> copy = new LinkedHashMap<>(names);
+            copy.put(normalize(name), name);
+            return new Team(copy);
+        }
+
+        private Team without(String name) {
+            LinkedHashMap<String, String> copy = new LinkedHashMap<>(names);
+            return copy.remove(normalize(name)) == null ? this : copy.isEmpty() ? EMPTY : new Team(copy);
+        }
+    }
+}
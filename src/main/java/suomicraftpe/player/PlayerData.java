@@ -23,6 +23,7 @@ import suomicraftpe.utils.Utils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * @author Adam Matthew
@@ -35,6 +36,8 @@ public class PlayerData implements Cloneable {
     public int islandLevel;
     public HashMap<String, Boolean> challengeList = new HashMap<>();
     public HashMap<String, Integer> challengeListTimes = new HashMap<>();
+    // Challenges that changed since the player was last saved
+    public HashSet<String> changedChallenges = new HashSet<>();
     public ArrayList<String> banList = new ArrayList<>();
     public String pubLocale;
     // Team Data
@@ -56,6 +59,8 @@ public class PlayerData implements Cloneable {
     public PlayerData(String playerName, int homes, ArrayList<String> members, HashMap<String, Boolean> list, HashMap<String, Integer> times, int islandlvl, boolean inTeam, String teamleader, String teamIslandloc, int resetleft, ArrayList<String> banList, String locale) {
         this.homes = homes;
         this.members = members;
+        this.challengeList = list;
+        this.challengeListTimes = times;
         this.inTeam = inTeam;
         this.islandLevel = islandlvl;
         this.teamLeader = teamleader;
@@ -123,7 +128,7 @@ public class PlayerData implements Cloneable {
      */
     public void setIslandLevel(final int i) {
         islandLevel = i;
-        ASkyBlock.get().getDatabase().savePlayerData(this);
+        ASkyBlock.get().getDatabase().queuePlayerData(this);
     }
 
     public HashMap<String, Boolean> getChallengeStatus() {
@@ -140,7 +145,7 @@ public class PlayerData implements Cloneable {
         islandLevel = 0;
         teamIslandLocation = null;
         members = new ArrayList<>();
-        ASkyBlock.get().getDatabase().savePlayerData(this);
+        ASkyBlock.get().getDatabase().queuePlayerData(this);
     }
 
     /**
@@ -160,10 +165,11 @@ public class PlayerData implements Cloneable {
         }
         times++;
         challengeListTimes.put(challenge.toLowerCase(), times);
+        changedChallenges.add(challenge.toLowerCase());
         //Utils.send(Utils.hashToString(challengeListTimes));
         // plugin.getLogger().info("DEBUG: complete " + challenge + ":" +
         // challengeListTimes.get(challenge.toLowerCase()).intValue() );
-        ASkyBlock.get().getDatabase().savePlayerData(this);
+        ASkyBlock.get().getDatabase().queuePlayerData(this);
     }
 
     /**
@@ -171,7 +177,50 @@ public class PlayerData implements Cloneable {
      */
     public void setLocale(String locale) {
         this.pubLocale = locale;
-        ASkyBlock.get().getDatabase().savePlayerData(this);
+        ASkyBlock.get().getDatabase().queuePlayerData(this);
+    }
+
+    /**
+     * Copy of this player that does not share any lists with it
+     *
+     * @return PlayerData
+     */
+    @Override
+    public PlayerData clone() {
+        try {
+            PlayerData pd = (PlayerData) super.clone();
+            pd.challengeList = new HashMap<>(challengeList);
+            pd.challengeListTimes = new HashMap<>(challengeListTimes);
+            pd.changedChallenges = new HashSet<>(changedChallenges);
+            pd.banList = new ArrayList<>(banList);
+            pd.members = new ArrayList<>(members);
+            return pd;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Copy of this player for saving. The changed challenges move to the
+     * copy, so they are only written once. If the write fails they have to
+     * be handed back with {@link #restoreChanges(PlayerData)}.
+     *
+     * @return PlayerData
+     */
+    public PlayerData snapshot() {
+        PlayerData pd = clone();
+        changedChallenges.clear();
+        return pd;
+    }
+
+    /**
+     * Marks the challenges of a snapshot that was not written as changed
+     * again, so the next save picks them up
+     *
+     * @param snapshot The copy from {@link #snapshot()}
+     */
+    public void restoreChanges(PlayerData snapshot) {
+        changedChallenges.addAll(snapshot.changedChallenges);
     }
 
     public Location getTeamIslandLocation() {
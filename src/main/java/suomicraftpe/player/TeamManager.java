@@ -47,38 +47,36 @@ public class TeamManager {
     }
 
     public boolean addTeam(Player leader, Player member) {
-        boolean done = false;
         PlayerData te = plugin.getPlayerInfo(leader);
-        te.members.add(member.getName());
-        for (String members : te.members) {
-            if (members.equalsIgnoreCase(member.getName())) {
-                done = true;
-                break;
-            }
+        boolean added = !te.members.contains(member.getName());
+        if (added) {
+            te.members.add(member.getName());
+            plugin.getDatabase().queuePlayerData(te);
         }
-        return done;
+        // The index may not have the member yet even if the player data has
+        return plugin.getMemberIndex().addMember(leader.getName(), member.getName()) || added;
     }
 
     public boolean kickTeam(Player leader, Player member, String message) {
         String kickMessage = TextFormat.RED + plugin.getLocale(member).kickedFromTeam.replace("[name]", leader.getName());
-        boolean done = false;
         if (!message.isEmpty()) {
             kickMessage = message;
         }
         PlayerData te = plugin.getPlayerInfo(leader);
         if (!te.members.contains(member.getName())) {
             leader.sendMessage(plugin.getPrefix() + plugin.getLocale(leader).errorOfflinePlayer);
-            return true;
+            return false;
         }
         te.members.remove(member.getName());
+        plugin.getDatabase().queuePlayerData(te);
+        plugin.getMemberIndex().removeMember(leader.getName(), member.getName());
         if (member.isOnline()) {
             member.sendMessage(plugin.getPrefix() + kickMessage);
         } else {
-            plugin.getMessages().setMessage(member.getName(), message);
+            plugin.getMessages().setMessage(member.getName(), kickMessage);
         }
-        //todo: Store kick message if player doesnt exsits
         //todo: Kick the player if the player in owner's island
-        return done;
+        return true;
     }
 
     public ArrayList<String> getPlayerMembers(String p) {
@@ -90,7 +88,7 @@ public class TeamManager {
     }
 
     private boolean kick(Player p, PlayerData td) {
-        if (plugin.level.contains(p.getLevel().getName())) {
+        if (plugin.level.contains(p.getLevel())) {
             String st = td.leader;
             IslandData p1 = plugin.getDatabase().getIsland(st, 1);
             if (plugin.getIsland().generateIslandKey(p.getLocation()) == p1.getIslandId()) {
@@ -20,27 +20,29 @@ import cn.nukkit.Server;
 import cn.nukkit.level.Level;
 import cn.nukkit.level.Location;
 import cn.nukkit.math.Vector3;
-import com.google.common.collect.Lists;
 import suomicraftpe.ASkyBlock;
-import suomicraftpe.player.PlayerData;
+import suomicraftpe.player.MemberIndex;
 import suomicraftpe.utils.Settings;
 import suomicraftpe.utils.Utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * @author Adam Matthew
  */
 public class IslandData implements Cloneable {
 
-    private final HashMap<SettingsFlag, Boolean> igs = new HashMap<>();
+    // Island Guard settings, one bit per flag ordinal
+    private long flags;
     // Coordinates of the home spawn location
     public int homeX = 0;
     public int homeY = 0;
     public int homeZ = 0;
-    private int islandId = 0;
+    private long islandId = 0;
     private int id = 0;
     private String levelName;
     private String owner;
@@ -56,17 +58,27 @@ public class IslandData implements Cloneable {
     private boolean isSpawn = false;
     // Protection size
     private int protectionRange = 0;
+    // Protected area, worked out when the center or size changes
+    private int minX;
+    private int minZ;
+    private int maxX;
+    private int maxZ;
+    // The loaded level of this island, looked up by name the first time it is needed
+    private Level level;
+    // Team of the owner, shared with the member index, null until it is needed
+    private MemberIndex.Team members;
 
     public IslandData(String levelName, int X, int Z, int PSize) {
         this.centerX = X;
         this.centerZ = Z;
         this.levelName = levelName;
         this.protectionRange = PSize;
+        updateBounds();
         // Island Guard Settings
         setIgsDefaults();
     }
 
-    public IslandData(String levelName, int X, int Y, int Z, int homeX, int homeY, int homeZ, int PSize, String name, String owner, String biome, int id, int islandId, boolean locked, String defaultvalue, boolean isSpawn) {
+    public IslandData(String levelName, int X, int Y, int Z, int homeX, int homeY, int homeZ, int PSize, String name, String owner, String biome, int id, long islandId, boolean locked, long flags, boolean isSpawn) {
         if (biome.isEmpty()) {
             biome = "PLAINS";
         }
@@ -78,13 +90,14 @@ public class IslandData implements Cloneable {
         this.homeY = homeY;
         this.homeZ = homeZ;
         this.protectionRange = PSize;
+        updateBounds();
         this.name = name;
         this.owner = owner;
         this.biome = biome;
         this.id = id;
         this.islandId = islandId;
         this.locked = locked;
-        this.serilizeIgs(defaultvalue);
+        this.flags = flags;
         this.isSpawn = isSpawn;
     }
 
@@ -96,6 +109,14 @@ public class IslandData implements Cloneable {
         this.centerX = centerX;
         this.centerY = centerY;
         this.centerZ = centerZ;
+        updateBounds();
+    }
+
+    private void updateBounds() {
+        minX = centerX - protectionRange / 2;
+        minZ = centerZ - protectionRange / 2;
+        maxX = minX + protectionRange;
+        maxZ = minZ + protectionRange;
     }
 
     public void setHomeLocation(Vector3 vector) {
@@ -117,21 +138,46 @@ public class IslandData implements Cloneable {
         isSpawn = b;
     }
 
-    private void serilizeIgs(String defaultvalue) {
-        if (isSpawn) {
-            setSpawnDefaults();
-        } else {
-            setIgsDefaults();
+    /**
+     * Reads the old "true, false, ..." protection format, one value per
+     * flag in declaration order. Flags that are missing keep their
+     * default.
+     *
+     * @param legacy  The old protection column
+     * @param isSpawn Whether the spawn defaults apply
+     * @return The flags as a bitmask
+     */
+    public static long parseLegacyFlags(String legacy, boolean isSpawn) {
+        long result = toFlags(isSpawn ? Settings.defaultSpawnSettings : Settings.defaultIslandSettings);
+        if (legacy == null) {
+            return result;
         }
-        boolean value;
-        ArrayList<String> bool = Utils.stringToArray(defaultvalue, ", ");
-        for (int i = 0; i < SettingsFlag.values().length; i++) {
-            String pool = bool.get(i);
-            value = Boolean.parseBoolean(pool);
-            SettingsFlag[] set = SettingsFlag.values();
-            igs.put(set[i], value);
+        ArrayList<String> values = Utils.stringToArray(legacy, ", ");
+        SettingsFlag[] set = SettingsFlag.values();
+        for (int i = 0; i < set.length && i < values.size(); i++) {
+            if (Boolean.parseBoolean(values.get(i).trim())) {
+                result |= set[i].bit;
+            } else {
+                result &= ~set[i].bit;
+            }
         }
+        return result;
+    }
 
+    /**
+     * Packs a flag map into a bitmask, flags that are missing are off
+     *
+     * @param defaults The flags
+     * @return The flags as a bitmask
+     */
+    public static long toFlags(Map<SettingsFlag, Boolean> defaults) {
+        long result = 0;
+        for (SettingsFlag flag : SettingsFlag.values()) {
+            if (defaults.get(flag) == Boolean.TRUE) {
+                result |= flag.bit;
+            }
+        }
+        return result;
     }
 
     /* (non-Javadoc)
@@ -147,24 +193,64 @@ public class IslandData implements Cloneable {
         }
     }
 
+    /**
+     * Copy of this island for the database thread, so a write never sees
+     * an island that is half way through a change on the server thread
+     *
+     * @return IslandData
+     */
+    public IslandData snapshot() {
+        try {
+            return (IslandData) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     public int getMinProtectedZ() {
-        return (centerZ - protectionRange / 2);
+        return minZ;
     }
 
     public int getMinProtectedX() {
-        return (centerX - protectionRange / 2);
+        return minX;
     }
 
     public int getProtectionSize() {
         return protectionRange;
     }
 
-    public ArrayList<String> getMembers() {
-        PlayerData pd = ASkyBlock.get().getDatabase().getPlayerData(this.owner);
-        if (pd == null) {
-            return Lists.newArrayList(new String());
+    public void setProtectionSize(int protectionRange) {
+        this.protectionRange = protectionRange;
+        updateBounds();
+    }
+
+    /**
+     * @return The team members of the owner, the set never changes
+     */
+    public Set<String> getMembers() {
+        return getTeam().getNames();
+    }
+
+    private MemberIndex.Team getTeam() {
+        MemberIndex.Team team = members;
+        if (team == null) {
+            team = members = ASkyBlock.get().getMemberIndex().getMembers(owner);
         }
-        return pd.members;
+        return team;
+    }
+
+    public void setMembers(MemberIndex.Team members) {
+        this.members = members;
+    }
+
+    /**
+     * Checks if a player is in the team of the owner
+     *
+     * @param player The player name
+     * @return true if the player is a member
+     */
+    public boolean isMember(String player) {
+        return getTeam().contains(player);
     }
 
     /**
@@ -174,19 +260,37 @@ public class IslandData implements Cloneable {
      * @return true if it is, false if not
      */
     public boolean onIsland(Location target) {
-        Level level = Server.getInstance().getLevelByName(levelName);
-        if (level != null && levelName != null) {
-            // If the new nether is being used, islands exist in the nether too
-            if (target.getLevel().getName().equalsIgnoreCase(levelName)) {
-                if (target.getFloorX() >= getMinProtectedX()
-                    && target.getFloorX() <= (getMinProtectedX() + protectionRange)
-                    && target.getFloorZ() >= getMinProtectedZ()
-                    && target.getFloorZ() <= (getMinProtectedZ() + protectionRange)) {
-                    return true;
-                }
-            }
+        // If the new nether is being used, islands exist in the nether too
+        Level targetLevel = target.getLevel();
+        if (targetLevel != level && !resolveLevel(targetLevel)) {
+            return false;
+        }
+        return onIsland(target.getFloorX(), target.getFloorZ());
+    }
+
+    /**
+     * Checks if a block column is within this island's protected area,
+     * the level is not checked
+     *
+     * @param x Block x
+     * @param z Block z
+     * @return true if it is, false if not
+     */
+    public boolean onIsland(int x, int z) {
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Only reached the first time and after the level was reloaded, the
+     * level of a location is always loaded so there is no need to ask the
+     * server for it
+     */
+    private boolean resolveLevel(Level target) {
+        if (target == null || levelName == null || !target.getName().equalsIgnoreCase(levelName)) {
+            return false;
         }
-        return false;
+        level = target;
+        return true;
     }
 
     /**
@@ -196,15 +300,18 @@ public class IslandData implements Cloneable {
      * @return true or false, or false if flag is not in the list
      */
     public boolean getIgsFlag(SettingsFlag flag) {
-        if (this.igs.containsKey(flag)) {
-            return igs.get(flag);
-        }
-        return false;
+        return (flags & flag.bit) != 0;
     }
 
-    @SuppressWarnings("rawtypes")
-    public HashMap getIgsValues() {
-        return igs;
+    /**
+     * @return Copy of every flag and its status
+     */
+    public EnumMap<SettingsFlag, Boolean> getIgsValues() {
+        EnumMap<SettingsFlag, Boolean> values = new EnumMap<>(SettingsFlag.class);
+        for (SettingsFlag flag : SettingsFlag.values()) {
+            values.put(flag, getIgsFlag(flag));
+        }
+        return values;
     }
 
     /**
@@ -214,7 +321,11 @@ public class IslandData implements Cloneable {
      * @param value
      */
     public void setIgsFlag(SettingsFlag flag, boolean value) {
-        this.igs.put(flag, value);
+        if (value) {
+            flags |= flag.bit;
+        } else {
+            flags &= ~flag.bit;
+        }
     }
 
     /**
@@ -222,37 +333,19 @@ public class IslandData implements Cloneable {
      * this island
      */
     public void setIgsDefaults() {
-        for (SettingsFlag flag : SettingsFlag.values()) {
-            if (!Settings.defaultIslandSettings.containsKey(flag)) {
-                // Default default
-                this.igs.put(flag, false);
-            } else {
-                if (Settings.defaultIslandSettings.get(flag) == null) {
-                    this.igs.put(flag, false);
-                } else {
-                    this.igs.put(flag, Settings.defaultIslandSettings.get(flag));
-                }
-            }
-        }
+        // Flags that are not in the config default to false
+        flags = toFlags(Settings.defaultIslandSettings);
     }
 
     /**
-     * @return Serialized set of settings
+     * @return Every protection flag as a bitmask, bit n is the flag with ordinal n
      */
-    public String getSettings() {
-        String result = "";
-        // Personal island protection settings - serialize enum into 1's and 0's representing the boolean values
-        try {
-            ArrayList<Boolean> FANTASTIC = new ArrayList<>();
-            for (Boolean f : igs.values()) {
-                FANTASTIC.add(f);
-            }
-            result = Utils.arrayToString(FANTASTIC);
-        } catch (Exception e) {
-            e.printStackTrace();
-            result = "";
-        }
-        return result;
+    public long getFlags() {
+        return flags;
+    }
+
+    public void setFlags(long flags) {
+        this.flags = flags;
     }
 
     public int getId() {
@@ -263,11 +356,11 @@ public class IslandData implements Cloneable {
         this.id = id;
     }
 
-    public int getIslandId() {
+    public long getIslandId() {
         return islandId;
     }
 
-    public void setIslandId(int islandId) {
+    public void setIslandId(long islandId) {
         this.islandId = islandId;
     }
 
@@ -276,23 +369,11 @@ public class IslandData implements Cloneable {
      * this island
      */
     public void setSpawnDefaults() {
-        for (SettingsFlag flag : SettingsFlag.values()) {
-            if (!Settings.defaultSpawnSettings.containsKey(flag)) {
-                // Default default
-                this.igs.put(flag, false);
-            } else {
-                if (Settings.defaultSpawnSettings.get(flag) == null) {
-                    this.igs.put(flag, false);
-                } else {
-                    this.igs.put(flag, Settings.defaultSpawnSettings.get(flag));
-                }
-            }
-        }
+        flags = toFlags(Settings.defaultSpawnSettings);
     }
 
     public boolean inIslandSpace(int x, int z) {
-        return x >= getCenter().getFloorX() - protectionRange / 2 && x < getCenter().getFloorX() + protectionRange / 2 && z >= getCenter().getFloorZ() - protectionRange / 2
-            && z < getCenter().getFloorZ() + protectionRange / 2;
+        return x >= minX && x < centerX + protectionRange / 2 && z >= minZ && z < centerZ + protectionRange / 2;
     }
 
     public String getName() {
@@ -325,6 +406,8 @@ public class IslandData implements Cloneable {
 
     public final void setOwner(String owner) {
         this.owner = owner;
+        // The team belongs to the owner
+        this.members = null;
     }
 
     public String getLevelName() {
@@ -333,6 +416,7 @@ public class IslandData implements Cloneable {
 
     public void setLevelName(String levelName) {
         this.levelName = levelName;
+        this.level = null;
     }
 
     @Override
@@ -346,7 +430,7 @@ public class IslandData implements Cloneable {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 61 * hash + this.islandId;
+        hash = 61 * hash + Long.hashCode(this.islandId);
         hash = 61 * hash + this.id;
         hash = 61 * hash + Objects.hashCode(this.levelName);
         hash = 61 * hash + Objects.hashCode(this.owner);
@@ -545,6 +629,17 @@ public class IslandData implements Cloneable {
         /**
          * Visitors can pick up items
          */
-        VISITOR_ITEM_PICKUP
+        VISITOR_ITEM_PICKUP;
+
+        // New flags go to the end, the stored bitmasks use the ordinal
+        private final long bit = 1L << ordinal();
+
+        /**
+         * @param flags A bitmask from {@link IslandData#getFlags()}
+         * @return true if this flag is set in the bitmask
+         */
+        public boolean isSet(long flags) {
+            return (flags & bit) != 0;
+        }
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.storage;
+
+import cn.nukkit.level.Level;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The island worlds. Worlds are indexed by their level id, so finding out
+ * if a level is an island world, and which grid it uses, is an array
+ * lookup.
+ * <p>
+ * Worlds are only added at startup and by /isadmin generate, so every
+ * change copies the index and readers never take a lock.
+ *
+ * @author Adam Matthew
+ */
+public final class WorldRegistry implements Iterable<WorldSettings> {
+
+    private volatile WorldSettings[] byId = new WorldSettings[0];
+    private volatile HashMap<String, WorldSettings> byName = new HashMap<>();
+    private volatile List<WorldSettings> worlds = Collections.emptyList();
+    private volatile List<String> names = Collections.emptyList();
+
+    /**
+     * Adds a world, a world with the same name is replaced
+     *
+     * @param ws The world
+     */
+    public synchronized void add(WorldSettings ws) {
+        ArrayList<WorldSettings> list = new ArrayList<>(worlds);
+        list.removeIf(old -> old.getLevel().getName().equalsIgnoreCase(ws.getLevel().getName()));
+        list.add(ws);
+        rebuild(list);
+    }
+
+    public synchronized void clear() {
+        rebuild(new ArrayList<>());
+    }
+
+    private void rebuild(ArrayList<WorldSettings> list) {
+        int size = 0;
+        for (WorldSettings ws : list) {
+            size = Math.max(size, ws.getLevel().getId() + 1);
+        }
+        WorldSettings[] ids = new WorldSettings[size];
+        HashMap<String, WorldSettings> map = new HashMap<>();
+        ArrayList<String> levelNames = new ArrayList<>();
+        for (WorldSettings ws : list) {
+            ids[ws.getLevel().getId()] = ws;
+            map.put(ws.getLevel().getName().toLowerCase(Locale.ROOT), ws);
+            levelNames.add(ws.getLevel().getName());
+        }
+        byId = ids;
+        byName = map;
+        worlds = Collections.unmodifiableList(list);
+        names = Collections.unmodifiableList(levelNames);
+    }
+
+    /**
+     * @param level The level
+     * @return The settings of this island world, null if it is not one
+     */
+    public WorldSettings get(Level level) {
+        if (level == null) {
+            return null;
+        }
+        WorldSettings[] ids = byId;
+        int id = level.getId();
+        if (id < 0 || id >= ids.length) {
+            return null;
+        }
+        WorldSettings ws = ids[id];
+        // A reloaded level gets a new id
+        return ws != null && ws.getLevel() == level ? ws : null;
+    }
+
+    /**
+     * @param levelName The level name, in any case
+     * @return The settings of this island world, null if it is not one
+     */
+    public WorldSettings get(String levelName) {
+        return levelName == null ? null : byName.get(levelName.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean contains(Level level) {
+        return get(level) != null;
+    }
+
+    public boolean contains(String levelName) {
+        return get(levelName) != null;
+    }
+
+    /**
+     * @return The names of every island world, the list never changes
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    public int size() {
+        return worlds.size();
+    }
+
+    @Override
+    public Iterator<WorldSettings> iterator() {
+        return worlds.iterator();
+    }
+}
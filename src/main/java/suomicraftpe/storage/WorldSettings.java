@@ -18,8 +18,14 @@
 package suomicraftpe.storage;
 
 import cn.nukkit.level.Level;
+import suomicraftpe.island.IslandManager;
 import suomicraftpe.utils.Settings;
 
+/**
+ * Settings of one island world, including the size of its grid cells
+ *
+ * @author Adam Matthew
+ */
 public class WorldSettings {
 
     private Level level;
@@ -33,7 +39,7 @@ public class WorldSettings {
         this.level = level;
         // By using default parameters
         this.permission = "is.create";
-        this.plotSize = Settings.protectionrange;
+        this.plotSize = Settings.islandDistance;
         this.stopTime = Settings.stopTime;
         this.islandHeight = Settings.islandHieght;
         this.seaLevel = Settings.seaLevel;
@@ -42,7 +48,8 @@ public class WorldSettings {
     public WorldSettings(String permission, Level level, int plotSize, boolean stopTime, int islandHeight, int seaLevel) {
         this.permission = permission;
         this.level = level;
-        this.plotSize = plotSize;
+        // Worlds without their own size use the global grid
+        this.plotSize = plotSize > 0 ? plotSize : Settings.islandDistance;
         this.stopTime = stopTime;
         this.islandHeight = islandHeight;
         this.seaLevel = seaLevel;
@@ -60,10 +67,27 @@ public class WorldSettings {
         return stopTime;
     }
 
+    /**
+     * @return The size of a grid cell, the distance between two islands
+     */
     public int getPlotSize() {
         return plotSize;
     }
 
+    /**
+     * @return The protection size of new islands, never larger than a cell
+     */
+    public int getProtectionRange() {
+        return Math.min(Settings.protectionrange, plotSize);
+    }
+
+    /**
+     * @return The island key of the grid cell of this block position
+     */
+    public long cellKey(int x, int z) {
+        return IslandManager.cellKey(x, z, plotSize);
+    }
+
     public String getPermission() {
         return permission;
     }
@@ -49,6 +49,8 @@ public class DeleteIslandTask implements Runnable {
     private final IslandData pd;
     private final CommandSender player;
     private final ASkyBlock plugin;
+    // Cleanup timers that are still clearing blocks
+    private int cleaning = 0;
 
     public DeleteIslandTask(ASkyBlock plugin, IslandData pd, CommandSender player) {
         this.plugin = plugin;
@@ -68,7 +70,7 @@ public class DeleteIslandTask implements Runnable {
 
         // Determine if chunks need to be cleaned up or not
         boolean cleanUpBlocks = false;
-        if (Settings.islandDistance - pd.getProtectionSize() < 16) {
+        if (settings.getPlotSize() - pd.getProtectionSize() < 16) {
             cleanUpBlocks = true;
         }
 
@@ -78,7 +80,7 @@ public class DeleteIslandTask implements Runnable {
         int maxX = pd.getMinProtectedX() + pd.getProtectionSize();
         int maxZ = pd.getMinProtectedZ() + pd.getProtectionSize();
 
-        int islandSpacing = Settings.islandDistance - pd.getProtectionSize();
+        int islandSpacing = settings.getPlotSize() - pd.getProtectionSize();
         int minxX = (pd.getCenter().getFloorX() - range - islandSpacing);
         int minzZ = (pd.getCenter().getFloorZ() - range - islandSpacing);
         int maxxX = (pd.getCenter().getFloorX() + range + islandSpacing);
@@ -135,6 +137,7 @@ public class DeleteIslandTask implements Runnable {
 
         // Clear up any chunks in list
         if (!chunksToRemoved.isEmpty()) {
+            cleaning++;
             new NukkitRunnable() {
                 @Override
                 public void run() {
@@ -160,6 +163,7 @@ public class DeleteIslandTask implements Runnable {
                     }
                     if (chunksToRemoved.isEmpty()) {
                         this.cancel();
+                        cleaned();
                     }
                 }
 
@@ -168,6 +172,7 @@ public class DeleteIslandTask implements Runnable {
 
         // Clear up any chunks
         if (!chunksToClear.isEmpty()) {
+            cleaning++;
             new NukkitRunnable() {
                 @Override
                 public void run() {
@@ -195,6 +200,7 @@ public class DeleteIslandTask implements Runnable {
                     }
                     if (chunksToClear.isEmpty()) {
                         this.cancel();
+                        cleaned();
                     }
                 }
             }.runTaskTimer(plugin, 0, 20);
@@ -202,5 +208,17 @@ public class DeleteIslandTask implements Runnable {
 
         // Remove from database
         ASkyBlock.get().getDatabase().deleteIsland(pd);
+        plugin.getTracker().invalidate();
+        // Nobody gets the cell before its blocks are cleared
+        plugin.getDatabase().reserveCell(pd.getLevelName(), pd.getIslandId());
+        if (cleaning == 0) {
+            cleaned();
+        }
+    }
+
+    private void cleaned() {
+        if (--cleaning <= 0) {
+            plugin.getIsland().getAllocator().release(pd.getLevelName(), pd.getCenter().getFloorX(), pd.getCenter().getFloorZ());
+        }
     }
 }
@@ -8,12 +8,18 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TaskManager {
 
     public static final HashSet<String> TELEPORT_QUEUE = new HashSet<>();
+    /**
+     * Executor that hands work back to the server thread, for example to
+     * continue a database future with thenAcceptAsync(callback, MAIN_THREAD).
+     */
+    public static final Executor MAIN_THREAD = TaskManager::runTask;
     public static final HashMap<Integer, Integer> TASK = new HashMap<>();
     public static TaskManager IMP;
     public static AtomicInteger index = new AtomicInteger(0);
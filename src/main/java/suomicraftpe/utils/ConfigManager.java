@@ -27,6 +27,7 @@ import suomicraftpe.ASkyBlock;
 import suomicraftpe.economy.EconomyAPI;
 import suomicraftpe.locales.ASlocales;
 import suomicraftpe.locales.FileLister;
+import suomicraftpe.storage.IslandData;
 import suomicraftpe.storage.IslandData.SettingsFlag;
 import suomicraftpe.task.TaskManager;
 
@@ -191,6 +192,45 @@ public class ConfigManager {
                 Utils.send("&cUnknown setting in config.yml:protection.world " + setting.toUpperCase() + " skipping...");
             }
         }
+        Settings.defaultWorldFlags = IslandData.toFlags(Settings.defaultWorldSettings);
+        // Interactive blocks, the config adds to or replaces the built-in table
+        SettingsFlag[] interact = Settings.defaultInteractFlags();
+        ConfigSection protectionInteract = cfg.getSection("protection.interact");
+        for (String block : protectionInteract.getKeys(false)) {
+            String value = cfg.getString("protection.interact." + block, "").toUpperCase();
+            try {
+                int id = Integer.parseInt(block.trim());
+                if (id < 0 || id > Settings.MAX_BLOCK_ID) {
+                    throw new IllegalArgumentException();
+                }
+                SettingsFlag flag = value.equals("NONE") ? null : SettingsFlag.valueOf(value);
+                interact[id] = flag;
+            } catch (IllegalArgumentException e) {
+                Utils.send("&cUnknown setting in config.yml:protection.interact " + block + ": " + value + " skipping...");
+            }
+        }
+        Settings.interactFlags = interact;
+        // ******************** Database Settings *********************
+        Settings.poolMinSize = cfg.getInt("database.pool.minimumSize", 2);
+        Settings.poolMaxSize = cfg.getInt("database.pool.maximumSize", 10);
+        if (Settings.poolMaxSize < 1) {
+            Settings.poolMaxSize = 1;
+            Utils.send("Database pool maximum size must be at least 1, using 1.");
+        }
+        Settings.poolWriters = cfg.getInt("database.pool.writers", 4);
+        Settings.poolConnectionTimeout = cfg.getLong("database.pool.connectionTimeout", 30000);
+        Settings.poolIdleTimeout = cfg.getLong("database.pool.idleTimeout", 600000);
+        Settings.poolMaxLifetime = cfg.getLong("database.pool.maxLifetime", 1800000);
+        Settings.poolLeakDetectionThreshold = cfg.getLong("database.pool.leakDetectionThreshold", 0);
+        Settings.statementCacheSize = cfg.getInt("database.pool.statementCacheSize", 50);
+        Settings.serverPreparedStatements = cfg.getBoolean("database.MySQL.serverPreparedStatements", true);
+        Settings.playerSaveWindow = cfg.getLong("database.playerSaveWindow", 2000);
+        Settings.databaseFetchSize = cfg.getInt("database.fetchSize", 500);
+        Settings.sqliteWal = cfg.getBoolean("database.SQLite.wal", true);
+        Settings.sqliteReadConnections = cfg.getInt("database.SQLite.readConnections", 4);
+        Settings.logCompactInterval = cfg.getLong("database.log.compactInterval", 10);
+        Settings.slowQueryThreshold = cfg.getLong("database.slowQueryThreshold", 100);
+        Settings.migrationBatchSize = cfg.getInt("database.migrationBatchSize", 1000);
         // Get the default language
         Settings.defaultLanguage = cfg.getString("general.defaultlanguage", "en-US");
 
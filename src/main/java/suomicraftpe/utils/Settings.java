@@ -22,6 +22,8 @@ import suomicraftpe.storage.IslandData.SettingsFlag;
 
 import java.util.*;
 
+import static cn.nukkit.block.BlockID.*;
+
 /**
  * @author Adam Matthew
  */
@@ -67,6 +69,14 @@ public class Settings {
      * Default world protection settings
      */
     public static HashMap<SettingsFlag, Boolean> defaultWorldSettings = new HashMap<SettingsFlag, Boolean>();
+    /**
+     * Default world protection settings as a bitmask
+     */
+    public static long defaultWorldFlags = 0;
+    /**
+     * The flag that protects each interactive block, indexed by block id
+     */
+    public static SettingsFlag[] interactFlags = new SettingsFlag[0];
 
     /**
      * Default island protection settings
@@ -86,7 +96,68 @@ public class Settings {
     public static boolean allowCreeperGriefing;
     public static boolean allowCreeperDamage;
 
+    // database connection pool
+    public static int poolMinSize = 2;
+    public static int poolMaxSize = 10;
+    public static int poolWriters = 4;
+    public static long poolConnectionTimeout = 30000;
+    public static long poolIdleTimeout = 600000;
+    public static long poolMaxLifetime = 1800000;
+    public static long poolLeakDetectionThreshold = 0;
+    public static int statementCacheSize = 50;
+    public static boolean serverPreparedStatements = true;
+    public static long playerSaveWindow = 2000;
+    public static int databaseFetchSize = 500;
+    public static boolean sqliteWal = true;
+    public static int sqliteReadConnections = 4;
+    public static long logCompactInterval = 10;
+    public static long slowQueryThreshold = 100;
+    public static int migrationBatchSize = 1000;
+
     public static boolean useEconomy = false;
     public static double islandCost = 10D;
     public static boolean firstIslandFree = true;
+
+    // Highest block id the interact table holds
+    public static final int MAX_BLOCK_ID = 4095;
+
+    /**
+     * The built-in interactive blocks and the flag that protects them,
+     * protection.interact in config.yml is applied on top of this.
+     *
+     * @return Flags indexed by the id of the clicked block, null where nothing is checked
+     */
+    public static SettingsFlag[] defaultInteractFlags() {
+        SettingsFlag[] table = new SettingsFlag[MAX_BLOCK_ID + 1];
+        for (int id : new int[]{WOODEN_DOOR_BLOCK, SPRUCE_DOOR_BLOCK, ACACIA_DOOR_BLOCK, DARK_OAK_DOOR_BLOCK, BIRCH_DOOR_BLOCK, JUNGLE_DOOR_BLOCK, TRAPDOOR}) {
+            table[id] = SettingsFlag.DOOR;
+        }
+        for (int id : new int[]{FENCE_GATE, FENCE_GATE_SPRUCE, FENCE_GATE_ACACIA, FENCE_GATE_DARK_OAK, FENCE_GATE_BIRCH, FENCE_GATE_JUNGLE}) {
+            table[id] = SettingsFlag.GATE;
+        }
+        // 205 and 218 are the undyed and dyed shulker boxes
+        for (int id : new int[]{CHEST, TRAPPED_CHEST, DISPENSER, DROPPER, HOPPER_BLOCK, 205, 218}) {
+            table[id] = SettingsFlag.CHEST;
+        }
+        table[GRASS] = SettingsFlag.CROP_TRAMPLE;
+        table[BREWING_STAND_BLOCK] = SettingsFlag.BREWING;
+        table[CAULDRON_BLOCK] = SettingsFlag.BREWING;
+        for (int id : new int[]{REDSTONE_WIRE, UNPOWERED_REPEATER, POWERED_REPEATER, UNPOWERED_COMPARATOR, POWERED_COMPARATOR, DAYLIGHT_DETECTOR, DAYLIGHT_DETECTOR_INVERTED}) {
+            table[id] = SettingsFlag.REDSTONE;
+        }
+        table[ENCHANTMENT_TABLE] = SettingsFlag.ENCHANTING;
+        table[FURNACE] = SettingsFlag.FURNACE;
+        table[BURNING_FURNACE] = SettingsFlag.FURNACE;
+        table[NOTEBLOCK] = SettingsFlag.MUSIC;
+        for (int id : new int[]{STONE_BUTTON, WOODEN_BUTTON, LEVER}) {
+            table[id] = SettingsFlag.LEVER_BUTTON;
+        }
+        table[WORKBENCH] = SettingsFlag.CRAFTING;
+        table[ANVIL] = SettingsFlag.ANVIL;
+        table[BEACON] = SettingsFlag.BEACON;
+        table[CAKE_BLOCK] = SettingsFlag.BREAK_BLOCKS;
+        table[DRAGON_EGG] = SettingsFlag.BREAK_BLOCKS;
+        table[MONSTER_SPAWNER] = SettingsFlag.BREAK_BLOCKS;
+        return table;
+    }
 }
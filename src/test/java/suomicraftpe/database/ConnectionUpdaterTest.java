@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import cn.nukkit.level.generator.biome.Biome;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import suomicraftpe.database.variables.SQLiteDatabase;
+import suomicraftpe.island.IslandManager;
+import suomicraftpe.storage.IslandData.SettingsFlag;
+import suomicraftpe.utils.Settings;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class ConnectionUpdaterTest {
+
+    private static final int LATEST = 8;
+    // The nether has a smaller grid than the island distance
+    private static final ToIntFunction<String> PLOT_SIZES = levelName -> levelName.equals("Nether") ? 150 : 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection con;
+
+    @Before
+    public void setUp() throws Exception {
+        Settings.defaultBiome = Biome.getBiome(Biome.PLAINS);
+        Settings.protectionrange = 100;
+        Settings.defaultIslandSettings.put(SettingsFlag.PVP, true);
+        con = new SQLiteDatabase(folder.newFile("test.db")).createConnection();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        Settings.defaultIslandSettings.clear();
+        con.close();
+    }
+
+    @Test
+    public void newDatabase() throws SQLException {
+        ConnectionUpdater updater = new ConnectionUpdater(con, false, PLOT_SIZES);
+        updater.update();
+        assertEquals(LATEST, updater.getVersion());
+        assertEquals(LATEST, count("SELECT COUNT(*) FROM `schema_version`"));
+
+        Set<String> columns = columns("island");
+        assertTrue(columns.contains("flags"));
+        assertFalse(columns.contains("protection"));
+        assertTrue(columns("island_conflicts").contains("flags"));
+        assertTrue(columns("challenges").contains("times"));
+
+        // Nothing runs twice
+        new ConnectionUpdater(con, false, PLOT_SIZES).update();
+        assertEquals(LATEST, count("SELECT COUNT(*) FROM `schema_version`"));
+    }
+
+    @Test
+    public void databaseFromTheFirstReleases() throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE `island` (`x` INTEGER NOT NULL, `y` INTEGER NOT NULL, `z` INTEGER NOT NULL,"
+                + "`spawnX` INTEGER, `spawnY` INTEGER, `spawnZ` INTEGER,"
+                + "`owner` VARCHAR(64) NOT NULL, `world` VARCHAR(64) NOT NULL)");
+            stmt.executeUpdate("CREATE TABLE `worlds` (`world` VARCHAR(64))");
+            stmt.executeUpdate("CREATE TABLE `players` (`player` VARCHAR(64) NOT NULL, `homes` INTEGER NOT NULL,"
+                + "`resetleft` INTEGER NOT NULL, `banlist` TEXT, `teamleader` VARCHAR(64), `teamislandlocation` VARCHAR(255),"
+                + "`inteam` BOOLEAN, `islandlvl` INTEGER, `members` TEXT, `challengelist` TEXT, `challengelisttimes` TEXT,"
+                + "`name` VARCHAR(128), `locale` VARCHAR(16) NOT NULL)");
+            stmt.executeUpdate("INSERT INTO `island` (`x`, `y`, `z`, `owner`, `world`) VALUES "
+                + "(0, 60, 0, 'Steve', 'SkyBlock'), "
+                + "(200, 60, 0, 'Alex', 'SkyBlock'), "
+                + "(-200, 60, -400, 'Notch', 'SkyBlock'), "
+                // Both in the cell 1, 1 of the nether
+                + "(160, 60, 160, 'Steve', 'Nether'), "
+                + "(200, 60, 200, 'Alex', 'Nether')");
+            stmt.executeUpdate("INSERT INTO `players` (`player`, `homes`, `resetleft`, `challengelist`, `challengelisttimes`, `locale`) VALUES "
+                + "('Steve', 1, 3, 'Fish:true, Tree:false', 'Fish:3', 'en_US'), "
+                + "('Steve', 2, 3, NULL, NULL, 'en_US'), "
+                + "('Alex', 1, 3, '', NULL, 'en_US')");
+        }
+        ConnectionUpdater updater = new ConnectionUpdater(con, false, PLOT_SIZES);
+        updater.update();
+        assertEquals(LATEST, updater.getVersion());
+
+        assertIsland("SkyBlock", 0, 0, "Steve");
+        assertIsland("SkyBlock", 200, 0, "Alex");
+        assertIsland("Nether", 200, 200, "Alex");
+        assertEquals(3, count("SELECT COUNT(*) FROM `island`"));
+        // The cell goes to the first owner by name, the other island waits for an admin
+        assertEquals(1, count("SELECT COUNT(*) FROM `island_conflicts` WHERE `owner` = 'Steve' AND `world` = 'Nether' AND `islandId` = "
+            + IslandManager.cellKeyOf(1, 1)));
+        // The old int key of -200, -400 overflowed into the key of 200, 0
+        assertEquals(1, count("SELECT COUNT(*) FROM `island_conflicts` WHERE `owner` = 'Notch' AND `world` = 'SkyBlock' AND `islandId` = "
+            + IslandManager.cellKeyOf(-1, -2)));
+        assertEquals(2, count("SELECT COUNT(*) FROM `island_conflicts`"));
+
+        // The default protection the old versions used, as a bitmask
+        assertEquals(5, count("SELECT COUNT(*) FROM (SELECT `flags` FROM `island` UNION ALL SELECT `flags` FROM `island_conflicts`) WHERE `flags` = "
+            + (1L << SettingsFlag.PVP.ordinal())));
+        assertEquals(0, count("SELECT COUNT(*) FROM `island` WHERE `isSpawn` OR `psize` <> 100"));
+
+        // Only the first row of a player is kept
+        assertEquals(1, count("SELECT COUNT(*) FROM `players` WHERE `player` = 'Steve' AND `homes` = 1"));
+        assertEquals(2, count("SELECT COUNT(*) FROM `players`"));
+        assertEquals(1, count("SELECT COUNT(*) FROM `challenges` WHERE `player` = 'Steve' AND `challenge` = 'fish' AND `completed` AND `times` = 3"));
+        assertEquals(1, count("SELECT COUNT(*) FROM `challenges` WHERE `player` = 'Steve' AND `challenge` = 'tree' AND NOT `completed` AND `times` = 0"));
+        assertEquals(2, count("SELECT COUNT(*) FROM `challenges`"));
+        assertEquals(0, count("SELECT COUNT(*) FROM `players` WHERE `challengelist` IS NOT NULL"));
+    }
+
+    @Test
+    public void islandKeysUseTheGridOfTheirWorld() throws SQLException {
+        // Version 6 keyed every world with the island distance
+        new ConnectionUpdater(con, false, levelName -> 200).update();
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("DELETE FROM `schema_version` WHERE `version` = 8");
+            stmt.executeUpdate("INSERT INTO `island` (`world`, `islandId`, `x`, `y`, `z`, `isSpawn`, `psize`, `owner`, `name`, `biome`, `locked`, `flags`) VALUES "
+                + "('SkyBlock', " + IslandManager.cellKey(200, 200, 200) + ", 200, 60, 200, 0, 100, 'Steve', 'Island', 'PLAINS', 0, 0), "
+                + "('Nether', " + IslandManager.cellKey(0, 0, 200) + ", 0, 60, 0, 0, 100, 'Steve', 'Island', 'PLAINS', 0, 0), "
+                + "('Nether', " + IslandManager.cellKey(100, 300, 200) + ", 100, 60, 300, 0, 100, 'Alex', 'Island', 'PLAINS', 0, 0), "
+                + "('Nether', " + IslandManager.cellKey(-190, 0, 200) + ", -190, 60, 0, 0, 100, 'Notch', 'Island', 'PLAINS', 0, 0), "
+                // Shares the cell -2, 0 of the nether grid with Notch
+                + "('Nether', " + IslandManager.cellKey(-210, 0, 200) + ", -210, 60, 0, 0, 100, 'Jeb', 'Island', 'PLAINS', 0, 0)");
+        }
+        ConnectionUpdater updater = new ConnectionUpdater(con, false, PLOT_SIZES);
+        updater.update();
+        assertEquals(LATEST, updater.getVersion());
+
+        assertIsland("SkyBlock", 200, 200, "Steve");
+        assertIsland("Nether", 0, 0, "Steve");
+        assertIsland("Nether", 100, 300, "Alex");
+        assertIsland("Nether", -210, 0, "Jeb");
+        assertEquals(4, count("SELECT COUNT(*) FROM `island`"));
+        assertEquals(1, count("SELECT COUNT(*) FROM `island_conflicts` WHERE `owner` = 'Notch' AND `islandId` = " + IslandManager.cellKeyOf(-2, 0)));
+        assertEquals(1, count("SELECT COUNT(*) FROM `island_conflicts`"));
+
+        // The unique index is back
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("INSERT INTO `island` (`world`, `islandId`, `x`, `y`, `z`, `isSpawn`, `psize`, `owner`, `name`, `biome`, `locked`, `flags`) VALUES "
+                + "('Nether', " + IslandManager.cellKeyOf(0, 0) + ", 10, 60, 10, 0, 100, 'Notch', 'Island', 'PLAINS', 0, 0)");
+            fail("Two islands in one cell");
+        } catch (SQLException expected) {
+        }
+    }
+
+    private void assertIsland(String world, int x, int z, String owner) throws SQLException {
+        long key = IslandManager.cellKey(x, z, PLOT_SIZES.applyAsInt(world));
+        assertEquals(world + " " + x + ", " + z, 1, count("SELECT COUNT(*) FROM `island` WHERE `world` = '" + world + "' AND `islandId` = " + key
+            + " AND `x` = " + x + " AND `z` = " + z + " AND `owner` = '" + owner + "'"));
+    }
+
+    private long count(String query) throws SQLException {
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery(query)) {
+            assertTrue(set.next());
+            return set.getLong(1);
+        }
+    }
+
+    private Set<String> columns(String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        DatabaseMetaData meta = con.getMetaData();
+        try (ResultSet set = meta.getColumns(con.getCatalog(), null, table, null)) {
+            while (set.next()) {
+                columns.add(set.getString("COLUMN_NAME").toLowerCase());
+            }
+        }
+        return columns;
+    }
+}
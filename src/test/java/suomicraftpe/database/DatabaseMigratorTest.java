@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import cn.nukkit.level.generator.biome.Biome;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import suomicraftpe.database.variables.SQLiteDatabase;
+import suomicraftpe.island.IslandManager;
+import suomicraftpe.utils.Settings;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class DatabaseMigratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SQLiteDatabase source;
+    private SQLiteDatabase target;
+    private int batchSize;
+
+    @Before
+    public void setUp() throws Exception {
+        Settings.defaultBiome = Biome.getBiome(Biome.PLAINS);
+        batchSize = Settings.migrationBatchSize;
+        Settings.migrationBatchSize = 2;
+        source = new SQLiteDatabase(folder.newFile("source.db"));
+        target = new SQLiteDatabase(folder.newFile("target.db"));
+        try (Connection con = source.createConnection(); Statement stmt = con.createStatement()) {
+            new ConnectionUpdater(con, false, levelName -> 200).update();
+            // Worlds has no key, the same name can be listed more than once
+            stmt.executeUpdate("INSERT INTO `worlds` (`world`) VALUES ('SkyBlock'), ('Nether'), ('Nether'), ('Nether'), ('End')");
+            for (int i = 0; i < 7; i++) {
+                String world = i % 2 == 0 ? "SkyBlock" : "Nether";
+                stmt.executeUpdate("INSERT INTO `island` (`world`, `islandId`, `x`, `y`, `z`, `isSpawn`, `psize`, `owner`, `name`, `biome`, `locked`, `flags`) VALUES "
+                    + "('" + world + "', " + IslandManager.cellKey(i * 200, -i * 200, 200) + ", " + i * 200 + ", 60, " + -i * 200 + ", 0, 100, "
+                    + "'Player" + i + "', 'Island', 'PLAINS', 0, " + i + ")");
+                stmt.executeUpdate("INSERT INTO `players` (`player`, `homes`, `resetleft`, `locale`, `name`) VALUES ('player" + i + "', 1, 3, 'en_US', 'Player" + i + "')");
+                stmt.executeUpdate("INSERT INTO `challenges` (`player`, `challenge`, `completed`, `times`) VALUES "
+                    + "('player" + i + "', 'fish', 1, " + i + "), ('player" + i + "', 'tree', 0, 0)");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Settings.migrationBatchSize = batchSize;
+    }
+
+    @Test
+    public void copiesEveryTable() throws Exception {
+        new DatabaseMigrator(source, target).run();
+        assertSameRows();
+    }
+
+    @Test
+    public void resumesInsideRowsWithTheSameKey() throws Exception {
+        try (Connection con = target.createConnection(); Statement stmt = con.createStatement()) {
+            new ConnectionUpdater(con, false, levelName -> 200).update();
+            // The first batch ends after one of the three Nethers, the second fails
+            stmt.executeUpdate("CREATE TRIGGER `interrupt` BEFORE INSERT ON `worlds` WHEN (SELECT COUNT(*) FROM `worlds`) >= 2 "
+                + "BEGIN SELECT RAISE(ABORT, 'interrupted'); END");
+        }
+        new DatabaseMigrator(source, target).run();
+        assertEquals(2, rows(target, "SELECT `world` FROM `worlds`").size());
+        assertEquals(0, rows(target, "SELECT * FROM `island`").size());
+
+        try (Connection con = target.createConnection(); Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("DROP TRIGGER `interrupt`");
+        }
+        new DatabaseMigrator(source, target).run();
+        assertSameRows();
+
+        // A finished migration does not copy anything again
+        new DatabaseMigrator(source, target).run();
+        assertSameRows();
+    }
+
+    @Test
+    public void refusesATargetWithRows() throws Exception {
+        try (Connection con = target.createConnection(); Statement stmt = con.createStatement()) {
+            new ConnectionUpdater(con, false, levelName -> 200).update();
+            stmt.executeUpdate("INSERT INTO `worlds` (`world`) VALUES ('SkyBlock')");
+        }
+        new DatabaseMigrator(source, target).run();
+        assertEquals(1, rows(target, "SELECT `world` FROM `worlds`").size());
+        assertEquals(0, rows(target, "SELECT * FROM `players`").size());
+    }
+
+    private void assertSameRows() throws Exception {
+        String[] queries = {
+            "SELECT `world` FROM `worlds` ORDER BY `world`",
+            "SELECT " + RowMapper.ISLAND_COLUMNS + " FROM `island` ORDER BY `world`, `islandId`",
+            "SELECT " + RowMapper.PLAYER_COLUMNS + ", `name` FROM `players` ORDER BY `player`",
+            "SELECT * FROM `challenges` ORDER BY `player`, `challenge`",
+        };
+        for (String query : queries) {
+            List<String> expected = rows(source, query);
+            assertFalse(expected.isEmpty());
+            assertEquals(query, expected, rows(target, query));
+        }
+    }
+
+    private static List<String> rows(SQLiteDatabase db, String query) throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (Connection con = db.createConnection(); Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery(query)) {
+            int columns = set.getMetaData().getColumnCount();
+            while (set.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    row.append(set.getString(i)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import suomicraftpe.database.variables.SQLiteDatabase;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class WriteBehindQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConnectionPool pool;
+    private WriteBehindQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ConnectionPool(new SQLiteDatabase(folder.newFile("test.db"), true), 1, 4, 5000, 60000, 1800000, 0, 16);
+        try (Connection con = pool.getConnection(); Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE `rows` (`id` INTEGER NOT NULL PRIMARY KEY, `lane` VARCHAR(16))");
+        }
+        queue = new WriteBehindQueue("Test-Writer", pool, new QueryStats());
+    }
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+        pool.close();
+    }
+
+    @Test
+    public void failedWritesDoNotTakeTheBatchWithThem() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        // Holds the writer so the next writes are committed as one batch
+        CompletableFuture<Boolean> first = queue.submit("a", "block", con -> await(blocked));
+        CompletableFuture<Boolean> good = queue.submit("a", "insert", con -> insert(con, 1));
+        CompletableFuture<Boolean> bad = queue.submit("a", "insert twice", con -> {
+            // The first row is undone with the savepoint of this write
+            insert(con, 2);
+            insert(con, 1);
+        });
+        CompletableFuture<Boolean> broken = queue.submit("a", "throws", con -> {
+            insert(con, 3);
+            throw new IllegalStateException("broken");
+        });
+        CompletableFuture<Boolean> last = queue.submit("a", "insert", con -> insert(con, 4));
+        blocked.countDown();
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(good.get(10, TimeUnit.SECONDS));
+        assertFalse(bad.get(10, TimeUnit.SECONDS));
+        assertFalse(broken.get(10, TimeUnit.SECONDS));
+        assertTrue(last.get(10, TimeUnit.SECONDS));
+        assertEquals(ids(1, 4), rows());
+    }
+
+    @Test
+    public void callWaitsForTheWrite() throws Exception {
+        assertTrue(queue.call("a", "insert", con -> insert(con, 1)));
+        assertEquals(ids(1), rows());
+        assertFalse(queue.call("a", "insert", con -> insert(con, 1)));
+    }
+
+    @Test
+    public void writesOfAKeyStayInOrder() throws Exception {
+        WriteBehindQueue parallel = new WriteBehindQueue("Test-Parallel", pool, new QueryStats(), 3);
+        try {
+            assertEquals(3, parallel.getWriters());
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int id = i;
+                String key = "player" + (i % 7);
+                // Each write of a key depends on the one before it
+                results.add(parallel.submit(key, "insert", con -> {
+                    if (id >= 7 && !exists(con, id - 7)) {
+                        throw new SQLException("Row " + (id - 7) + " was not written yet");
+                    }
+                    insert(con, id);
+                }));
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            parallel.shutdown();
+        }
+        assertEquals(200, rows().size());
+    }
+
+    @Test
+    public void shutdownFlushesQueuedWrites() throws Exception {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int id = i;
+            results.add(queue.submit("insert", con -> insert(con, id)));
+        }
+        queue.shutdown();
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.isDone());
+            assertTrue(result.get());
+        }
+        assertEquals(50, rows().size());
+    }
+
+    @Test
+    public void writesAfterShutdownFail() throws Exception {
+        queue.shutdown();
+        CompletableFuture<Boolean> result = queue.submit("a", "insert", con -> insert(con, 1));
+        assertTrue(result.isDone());
+        assertFalse(result.get());
+        assertFalse(queue.call("a", "insert", con -> insert(con, 1)));
+        assertTrue(rows().isEmpty());
+    }
+
+    @Test
+    public void writesFailWhenTheDatabaseIsGone() throws Exception {
+        pool.close();
+        assertFalse(queue.submit("a", "insert", con -> insert(con, 1)).get(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) throws SQLException {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out");
+            }
+        } catch (InterruptedException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private static void insert(Connection con, int id) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("INSERT INTO `rows` (`id`, `lane`) VALUES (" + id + ", '" + Thread.currentThread().getName() + "')");
+        }
+    }
+
+    private static boolean exists(Connection con, int id) throws SQLException {
+        try (Statement stmt = con.createStatement(); ResultSet set = stmt.executeQuery("SELECT 1 FROM `rows` WHERE `id` = " + id)) {
+            return set.next();
+        }
+    }
+
+    private static List<Integer> ids(int... ids) {
+        List<Integer> list = new ArrayList<>();
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private List<Integer> rows() throws SQLException {
+        List<Integer> list = new ArrayList<>();
+        try (Connection con = pool.getConnection(); Statement stmt = con.createStatement();
+             ResultSet set = stmt.executeQuery("SELECT `id` FROM `rows` ORDER BY `id`")) {
+            while (set.next()) {
+                list.add(set.getInt(1));
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.island;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class IslandAllocatorTest {
+
+    @Test
+    public void spiralStartsAtTheOrigin() {
+        assertArrayEquals(new int[]{0, 0}, IslandAllocator.cell(0));
+        assertEquals(0, IslandAllocator.index(0, 0));
+    }
+
+    @Test
+    public void ringsAreFilledBeforeTheNextOne() {
+        for (int k = 1; k <= 20; k++) {
+            long first = (2L * k - 1) * (2L * k - 1);
+            long last = (2L * k + 1) * (2L * k + 1) - 1;
+            for (long n = first; n <= last; n++) {
+                int[] cell = IslandAllocator.cell(n);
+                assertEquals("ring of " + n, k, Math.max(Math.abs(cell[0]), Math.abs(cell[1])));
+            }
+        }
+    }
+
+    @Test
+    public void neighboursAreAdjacent() {
+        int[] previous = IslandAllocator.cell(1);
+        for (long n = 2; n < 10000; n++) {
+            int[] cell = IslandAllocator.cell(n);
+            int step = Math.abs(cell[0] - previous[0]) + Math.abs(cell[1] - previous[1]);
+            // Only the first cell of a ring steps out diagonally
+            assertTrue("step to " + n, step == 1 || step == 2);
+            previous = cell;
+        }
+    }
+
+    @Test
+    public void indexIsTheInverseOfCell() {
+        Set<Long> seen = new HashSet<>();
+        for (int x = -50; x <= 50; x++) {
+            for (int z = -50; z <= 50; z++) {
+                long n = IslandAllocator.index(x, z);
+                assertTrue("index of " + x + "," + z, seen.add(n));
+                assertArrayEquals(new int[]{x, z}, IslandAllocator.cell(n));
+            }
+        }
+        // Every position up to the last one of ring 50 is used exactly once
+        assertEquals(101 * 101, seen.size());
+        for (long n = 0; n < 101 * 101; n++) {
+            assertTrue(seen.contains(n));
+        }
+    }
+
+    @Test
+    public void farCells() {
+        int[][] cells = {{1000000, -1000000}, {-1000000, 999999}, {Integer.MAX_VALUE / 2, 7}, {-3, Integer.MIN_VALUE / 2 + 1}};
+        for (int[] cell : cells) {
+            long n = IslandAllocator.index(cell[0], cell[1]);
+            assertArrayEquals(cell, IslandAllocator.cell(n));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Only the calls that do not write to the database are tested, those
+ * need a running plugin.
+ *
+ * @author Adam Matthew
+ */
+public class MemberIndexTest {
+
+    private MemberIndex index;
+
+    @Before
+    public void setUp() {
+        index = new MemberIndex(null);
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        lists.put("Steve", Arrays.asList("Alex", "Notch", ""));
+        lists.put("alex", Collections.singletonList("Steve"));
+        lists.put("Herobrine", Collections.emptyList());
+        lists.put("Jeb", Arrays.asList("ALEX"));
+        index.load(lists);
+    }
+
+    @Test
+    public void membersOfAnOwner() {
+        MemberIndex.Team team = index.getMembers("steve");
+        assertEquals(Arrays.asList("Alex", "Notch"), Arrays.asList(team.getNames().toArray()));
+        assertTrue(team.contains("NOTCH"));
+        assertFalse(team.contains("Steve"));
+        assertFalse(team.contains(null));
+        assertSame(team, index.getMembers("STEVE"));
+    }
+
+    @Test
+    public void ownersWithoutMembersAreSkipped() {
+        assertSame(MemberIndex.Team.EMPTY, index.getMembers("Herobrine"));
+        assertSame(MemberIndex.Team.EMPTY, index.getMembers("Nobody"));
+        assertSame(MemberIndex.Team.EMPTY, index.getMembers(null));
+    }
+
+    @Test
+    public void teamsOfAPlayer() {
+        // Names are handed out as they were written, in any case they are looked up
+        assertEquals(new HashSet<>(Arrays.asList("Steve", "Jeb")), index.getTeams("Alex").getNames());
+        assertEquals(Collections.singleton("alex"), index.getTeams("steve").getNames());
+        assertEquals(Collections.singleton("Steve"), index.getTeams("Notch").getNames());
+        assertTrue(index.getTeams("Herobrine").isEmpty());
+    }
+
+    @Test
+    public void loadReplacesTheIndex() {
+        index.load(Collections.singletonMap("Notch", Collections.singletonList("Dinnerbone")));
+        assertTrue(index.getMembers("Steve").isEmpty());
+        assertTrue(index.getTeams("Alex").isEmpty());
+        assertTrue(index.getMembers("Notch").contains("dinnerbone"));
+        assertTrue(index.getTeams("Dinnerbone").contains("notch"));
+    }
+
+    @Test
+    public void unchangedTeamsAreNotWritten() {
+        // Both return before the islands of the owner are looked up
+        assertFalse(index.addMember("Steve", "alex"));
+        assertFalse(index.removeMember("Steve", "Jeb"));
+        assertTrue(index.getMembers("Steve").contains("Alex"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void teamsNeverChange() {
+        index.getMembers("Steve").getNames().add("Jeb");
+    }
+
+    @Test
+    public void normalizeIgnoresTheServerLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            // A Turkish server would turn the I into a dotless i
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals("title", MemberIndex.normalize("TITLE"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.storage;
+
+import org.junit.After;
+import org.junit.Test;
+import suomicraftpe.storage.IslandData.SettingsFlag;
+import suomicraftpe.utils.Settings;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class IslandDataFlagsTest {
+
+    @After
+    public void tearDown() {
+        Settings.defaultIslandSettings.clear();
+        Settings.defaultSpawnSettings.clear();
+    }
+
+    @Test
+    public void everyFlagHasItsOwnBit() {
+        // The bitmask is a BIGINT
+        assertTrue(SettingsFlag.values().length <= 64);
+        long all = 0;
+        for (SettingsFlag flag : SettingsFlag.values()) {
+            Map<SettingsFlag, Boolean> single = new EnumMap<>(SettingsFlag.class);
+            single.put(flag, true);
+            long bits = IslandData.toFlags(single);
+            assertEquals(flag.name(), 1L << flag.ordinal(), bits);
+            assertEquals(0, all & bits);
+            all |= bits;
+            for (SettingsFlag other : SettingsFlag.values()) {
+                assertEquals(other == flag, other.isSet(bits));
+            }
+        }
+    }
+
+    @Test
+    public void toFlagsOnlyKeepsTrue() {
+        Map<SettingsFlag, Boolean> values = new EnumMap<>(SettingsFlag.class);
+        values.put(SettingsFlag.ANVIL, true);
+        values.put(SettingsFlag.BED, false);
+        values.put(SettingsFlag.PVP, true);
+        long flags = IslandData.toFlags(values);
+        assertTrue(SettingsFlag.ANVIL.isSet(flags));
+        assertFalse(SettingsFlag.BED.isSet(flags));
+        assertTrue(SettingsFlag.PVP.isSet(flags));
+        assertFalse(SettingsFlag.CHEST.isSet(flags));
+        assertEquals(0, IslandData.toFlags(new EnumMap<>(SettingsFlag.class)));
+    }
+
+    @Test
+    public void islandFlagsMatchTheGetters() {
+        Settings.defaultIslandSettings.put(SettingsFlag.CHEST, true);
+        IslandData island = new IslandData("SkyBlock", 0, 0, 100);
+        assertTrue(island.getIgsFlag(SettingsFlag.CHEST));
+        assertFalse(island.getIgsFlag(SettingsFlag.PVP));
+        island.setIgsFlag(SettingsFlag.PVP, true);
+        island.setIgsFlag(SettingsFlag.CHEST, false);
+        assertEquals(1L << SettingsFlag.PVP.ordinal(), island.getFlags());
+        island.setIgsDefaults();
+        assertEquals(1L << SettingsFlag.CHEST.ordinal(), island.getFlags());
+    }
+
+    @Test
+    public void legacyValuesAreInDeclarationOrder() {
+        SettingsFlag[] flags = SettingsFlag.values();
+        StringBuilder legacy = new StringBuilder();
+        for (int i = 0; i < flags.length; i++) {
+            if (i > 0) {
+                legacy.append(", ");
+            }
+            legacy.append(i % 3 == 0);
+        }
+        long parsed = IslandData.parseLegacyFlags(legacy.toString(), false);
+        for (int i = 0; i < flags.length; i++) {
+            assertEquals(flags[i].name(), i % 3 == 0, flags[i].isSet(parsed));
+        }
+    }
+
+    @Test
+    public void shortLegacyValuesKeepTheDefaults() {
+        // Flags added after the string was written are not in it
+        Settings.defaultIslandSettings.put(SettingsFlag.ANVIL, true);
+        Settings.defaultIslandSettings.put(SettingsFlag.VISITOR_ITEM_PICKUP, true);
+        long parsed = IslandData.parseLegacyFlags("TRUE,  false", false);
+        assertTrue(SettingsFlag.ACID_DAMAGE.isSet(parsed));
+        assertFalse(SettingsFlag.ANVIL.isSet(parsed));
+        assertTrue(SettingsFlag.VISITOR_ITEM_PICKUP.isSet(parsed));
+        assertFalse(SettingsFlag.PVP.isSet(parsed));
+    }
+
+    @Test
+    public void missingLegacyValuesUseTheDefaultsOfTheIsland() {
+        Settings.defaultIslandSettings.put(SettingsFlag.PVP, true);
+        Settings.defaultSpawnSettings.put(SettingsFlag.CHEST, true);
+        assertEquals(1L << SettingsFlag.PVP.ordinal(), IslandData.parseLegacyFlags(null, false));
+        assertEquals(1L << SettingsFlag.CHEST.ordinal(), IslandData.parseLegacyFlags(null, true));
+        assertEquals(1L << SettingsFlag.CHEST.ordinal(), IslandData.parseLegacyFlags("", true));
+    }
+}
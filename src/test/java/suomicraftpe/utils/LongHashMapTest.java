@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class LongHashMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertNull(map.put(-1L, "b"));
+        assertNull(map.put(0L, "c"));
+        assertEquals("a", map.put(1L, "d"));
+        assertEquals(3, map.size());
+        assertEquals("d", map.get(1L));
+        assertEquals("b", map.get(-1L));
+        assertEquals("c", map.get(0L));
+        assertNull(map.get(2L));
+        assertTrue(map.containsKey(0L));
+        assertFalse(map.containsKey(2L));
+
+        assertEquals("b", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertFalse(map.containsKey(-1L));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+        assertTrue(map.values().isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullValues() {
+        new LongHashMap<String>().put(1L, null);
+    }
+
+    @Test
+    public void keysThatShareASlot() {
+        // Cell keys of one column only differ in the high bits
+        LongHashMap<Long> map = new LongHashMap<>(4);
+        List<Long> keys = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            long key = (long) i << 32;
+            keys.add(key);
+            map.put(key, key);
+        }
+        assertEquals(64, map.size());
+        // Removing from the middle of a probe chain must keep the rest reachable
+        for (int i = 0; i < 64; i += 2) {
+            assertEquals(keys.get(i), map.remove(keys.get(i)));
+        }
+        for (int i = 0; i < 64; i++) {
+            assertEquals(i % 2 == 0 ? null : keys.get(i), map.get(keys.get(i)));
+        }
+        assertEquals(32, map.size());
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        LongHashMap<Integer> map = new LongHashMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000) - 1000;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        List<Integer> values = map.values();
+        List<Integer> expectedValues = new ArrayList<>(expected.values());
+        Collections.sort(values);
+        Collections.sort(expectedValues);
+        assertEquals(expectedValues, values);
+    }
+}
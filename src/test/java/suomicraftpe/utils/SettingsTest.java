@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2017 Adam Matthew
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package suomicraftpe.utils;
+
+import cn.nukkit.block.BlockID;
+import cn.nukkit.item.Item;
+import org.junit.Test;
+import suomicraftpe.storage.IslandData.SettingsFlag;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Matthew
+ */
+public class SettingsTest {
+
+    @Test
+    public void interactTableHoldsEveryBlockId() {
+        assertEquals(Settings.MAX_BLOCK_ID + 1, Settings.defaultInteractFlags().length);
+    }
+
+    @Test
+    public void interactTableIsKeyedByBlockId() {
+        SettingsFlag[] table = Settings.defaultInteractFlags();
+        assertEquals(SettingsFlag.DOOR, table[BlockID.WOODEN_DOOR_BLOCK]);
+        assertEquals(SettingsFlag.DOOR, table[BlockID.DARK_OAK_DOOR_BLOCK]);
+        assertEquals(SettingsFlag.REDSTONE, table[BlockID.REDSTONE_WIRE]);
+        assertEquals(SettingsFlag.REDSTONE, table[BlockID.POWERED_COMPARATOR]);
+        assertEquals(SettingsFlag.BREWING, table[BlockID.BREWING_STAND_BLOCK]);
+        assertEquals(SettingsFlag.CHEST, table[BlockID.HOPPER_BLOCK]);
+        // The item that places a door is never the block that is clicked
+        assertNull(table[Item.WOODEN_DOOR]);
+    }
+}